@@ -0,0 +1,329 @@
+package fa;
+
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import fa.dfa.DFA;
+import fa.dfa.DFATable;
+import fa.nfa.NFA;
+import fa.nfa.NFAState;
+
+/**
+ * Language equivalence and inclusion checks that work directly on
+ * DFAs and NFAs without determinizing or minimizing them first.
+ * Equivalence uses the Hopcroft-Karp union-find algorithm on
+ * on-the-fly subset pairs, inclusion uses an antichain search.
+ * Both stop at the first counterexample found.
+ * Witness strings use "e" for the empty string, as the drivers do.
+ * @author geoffreymeier
+ * @author parkererway
+ *
+ */
+public class LanguageChecker {
+
+	/**
+	 * Check whether two automata accept the same language
+	 * @param a the first automaton
+	 * @param b the second automaton
+	 * @return true if L(a) = L(b)
+	 */
+	public static boolean equivalent(FAInterface a, FAInterface b) {
+		return equivalenceWitness(a, b) == null;
+	}
+
+	/**
+	 * Check whether every string accepted by b is accepted by a
+	 * @param a the including automaton
+	 * @param b the included automaton
+	 * @return true if L(b) is a subset of L(a)
+	 */
+	public static boolean includes(FAInterface a, FAInterface b) {
+		return inclusionWitness(a, b) == null;
+	}
+
+	/**
+	 * Find a string accepted by exactly one of the automata
+	 * @param a the first automaton
+	 * @param b the second automaton
+	 * @return a counterexample, or null if the automata are equivalent
+	 */
+	public static String equivalenceWitness(FAInterface a, FAInterface b) {
+		char[] abc = alphabet(a, b);
+		Automaton fa = new Automaton(a, abc);
+		Automaton fb = new Automaton(b, abc);
+
+		// subsets of both automata share one union-find, B's states
+		// are shifted past A's so that only the two empty sets, which
+		// accept the same (empty) language, share a key
+		Map<BitSet, Integer> nodes = new HashMap<BitSet, Integer>();
+		List<Integer> parent = new ArrayList<Integer>();
+
+		List<BitSet> left = new ArrayList<BitSet>();
+		List<BitSet> right = new ArrayList<BitSet>();
+		List<Integer> from = new ArrayList<Integer>();
+		List<Character> via = new ArrayList<Character>();
+
+		left.add(fa.init);
+		right.add(fb.init);
+		from.add(-1);
+		via.add('e');
+		union(node(nodes, parent, fa.init, 0), node(nodes, parent, fb.init, fa.n), parent);
+
+		for (int cur = 0; cur < left.size(); cur++) {
+			BitSet x = left.get(cur);
+			BitSet y = right.get(cur);
+			if (fa.isFinal(x) != fb.isFinal(y)) {
+				return witness(cur, from, via);
+			}
+			for (int col = 0; col < abc.length; col++) {
+				BitSet x2 = fa.post(x, col);
+				BitSet y2 = fb.post(y, col);
+				int nx = node(nodes, parent, x2, 0);
+				int ny = node(nodes, parent, y2, fa.n);
+				if (find(nx, parent) != find(ny, parent)) {
+					union(nx, ny, parent);
+					left.add(x2);
+					right.add(y2);
+					from.add(cur);
+					via.add(abc[col]);
+				}
+			}
+		}
+		return null;
+	}
+
+	/**
+	 * Find a string accepted by b but not by a
+	 * @param a the including automaton
+	 * @param b the included automaton
+	 * @return a counterexample, or null if L(b) is a subset of L(a)
+	 */
+	public static String inclusionWitness(FAInterface a, FAInterface b) {
+		char[] abc = alphabet(a, b);
+		Automaton fa = new Automaton(a, abc);
+		Automaton fb = new Automaton(b, abc);
+
+		// pairs (p, S): p a single state of b, S the subset of a
+		// reached on the same string. Only the minimal S seen for
+		// each p is explored, since a smaller S is harder to accept.
+		List<List<BitSet>> antichain = new ArrayList<List<BitSet>>();
+		for (int p = 0; p < fb.n; p++) {
+			antichain.add(new ArrayList<BitSet>());
+		}
+		List<Integer> states = new ArrayList<Integer>();
+		List<BitSet> subsets = new ArrayList<BitSet>();
+		List<Integer> from = new ArrayList<Integer>();
+		List<Character> via = new ArrayList<Character>();
+
+		for (int p = fb.init.nextSetBit(0); p >= 0; p = fb.init.nextSetBit(p + 1)) {
+			if (visit(antichain.get(p), fa.init)) {
+				states.add(p);
+				subsets.add(fa.init);
+				from.add(-1);
+				via.add('e');
+			}
+		}
+
+		for (int cur = 0; cur < states.size(); cur++) {
+			int p = states.get(cur);
+			BitSet s = subsets.get(cur);
+			if (fb.finals.get(p) && !fa.isFinal(s)) {
+				return witness(cur, from, via);
+			}
+			for (int col = 0; col < abc.length; col++) {
+				BitSet s2 = null;
+				int[] targets = fb.post[p][col];
+				for (int p2 : targets) {
+					if (s2 == null) {
+						s2 = fa.post(s, col);
+					}
+					if (visit(antichain.get(p2), s2)) {
+						states.add(p2);
+						subsets.add(s2);
+						from.add(cur);
+						via.add(abc[col]);
+					}
+				}
+			}
+		}
+		return null;
+	}
+
+	/**
+	 * Adds s to the antichain unless a subset of it is already there
+	 * @param visited the minimal subsets seen so far
+	 * @param s the new subset
+	 * @return true if s was added and should be explored
+	 */
+	private static boolean visit(List<BitSet> visited, BitSet s) {
+		for (BitSet old : visited) {
+			BitSet diff = (BitSet) old.clone();
+			diff.andNot(s);
+			if (diff.isEmpty()) {
+				return false;
+			}
+		}
+		Iterator<BitSet> it = visited.iterator();
+		while (it.hasNext()) {
+			BitSet diff = (BitSet) s.clone();
+			diff.andNot(it.next());
+			if (diff.isEmpty()) {
+				it.remove();
+			}
+		}
+		visited.add(s);
+		return true;
+	}
+
+	private static String witness(int cur, List<Integer> from, List<Character> via) {
+		StringBuilder sb = new StringBuilder();
+		for (int i = cur; from.get(i) >= 0; i = from.get(i)) {
+			sb.append(via.get(i));
+		}
+		return sb.length() == 0 ? "e" : sb.reverse().toString();
+	}
+
+	private static int node(Map<BitSet, Integer> nodes, List<Integer> parent, BitSet s, int shift) {
+		BitSet key = new BitSet();
+		for (int i = s.nextSetBit(0); i >= 0; i = s.nextSetBit(i + 1)) {
+			key.set(i + shift);
+		}
+		Integer id = nodes.get(key);
+		if (id == null) {
+			id = parent.size();
+			parent.add(id);
+			nodes.put(key, id);
+		}
+		return id;
+	}
+
+	private static int find(int x, List<Integer> parent) {
+		while (parent.get(x) != x) {
+			parent.set(x, parent.get(parent.get(x)));
+			x = parent.get(x);
+		}
+		return x;
+	}
+
+	private static void union(int x, int y, List<Integer> parent) {
+		parent.set(find(x, parent), find(y, parent));
+	}
+
+	private static char[] alphabet(FAInterface a, FAInterface b) {
+		Set<Character> ordAbc = new LinkedHashSet<Character>(a.getABC());
+		ordAbc.addAll(b.getABC());
+		char[] ret = new char[ordAbc.size()];
+		int i = 0;
+		for (char c : ordAbc) {
+			ret[i++] = c;
+		}
+		return ret;
+	}
+
+	/**
+	 * Integer view of an automaton where every successor set is
+	 * already closed under e transitions.
+	 */
+	private static class Automaton {
+		/**
+		 * Number of states
+		 */
+		int n;
+
+		/**
+		 * Successors, post[state][column]
+		 */
+		int[][][] post;
+
+		/**
+		 * Final states
+		 */
+		BitSet finals = new BitSet();
+
+		/**
+		 * Closure of the start state
+		 */
+		BitSet init = new BitSet();
+
+		Automaton(FAInterface fa, char[] abc) {
+			if (fa instanceof DFA) {
+				DFATable table = new DFATable((DFA) fa);
+				n = table.getStateCount();
+				post = new int[n][abc.length][];
+				for (int s = 0; s < n; s++) {
+					if (table.isFinal(s)) {
+						finals.set(s);
+					}
+					for (int col = 0; col < abc.length; col++) {
+						int t = table.step(s, abc[col]);
+						post[s][col] = t < 0 ? new int[0] : new int[] { t };
+					}
+				}
+				init.set(table.getStartState());
+			} else if (fa instanceof NFA) {
+				NFA nfa = (NFA) fa;
+				Map<NFAState, Integer> ids = new HashMap<NFAState, Integer>();
+				for (NFAState s : nfa.getStates()) {
+					ids.put(s, ids.size());
+				}
+				n = ids.size();
+				int[][] closure = new int[n][];
+				for (NFAState s : nfa.getStates()) {
+					closure[ids.get(s)] = toIds(nfa.eClosure(s), ids);
+					if (s.isFinal()) {
+						finals.set(ids.get(s));
+					}
+				}
+				post = new int[n][abc.length][];
+				for (NFAState s : nfa.getStates()) {
+					for (int col = 0; col < abc.length; col++) {
+						BitSet to = new BitSet();
+						for (NFAState t : nfa.getToState(s, abc[col])) {
+							for (int c : closure[ids.get(t)]) {
+								to.set(c);
+							}
+						}
+						post[ids.get(s)][col] = to.stream().toArray();
+					}
+				}
+				for (int c : closure[ids.get(nfa.getStartState())]) {
+					init.set(c);
+				}
+			} else {
+				throw new IllegalArgumentException("Unsupported automaton type " + fa.getClass().getName());
+			}
+		}
+
+		private static int[] toIds(Set<NFAState> states, Map<NFAState, Integer> ids) {
+			int[] ret = new int[states.size()];
+			int i = 0;
+			for (NFAState s : states) {
+				ret[i++] = ids.get(s);
+			}
+			return ret;
+		}
+
+		/**
+		 * Successor of a closed subset on one symbol
+		 */
+		BitSet post(BitSet s, int col) {
+			BitSet ret = new BitSet();
+			for (int i = s.nextSetBit(0); i >= 0; i = s.nextSetBit(i + 1)) {
+				for (int t : post[i][col]) {
+					ret.set(t);
+				}
+			}
+			return ret;
+		}
+
+		boolean isFinal(BitSet s) {
+			return s.intersects(finals);
+		}
+	}
+}
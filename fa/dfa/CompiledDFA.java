@@ -0,0 +1,74 @@
+package fa.dfa;
+
+/**
+ * Common view of a compiled DFA, whatever memory its table lives in.
+ * States are numbered 0..n-1 and -1 stands for a run that got stuck.
+ * Matching components such as <code>DFAScanner</code>,
+ * <code>DFASearcher</code> and <code>BatchMatcher</code> work on this
+ * interface, so they accept both <code>DFATable</code> and
+ * <code>OffHeapDFATable</code>.
+ * @author geoffreymeier
+ * @author parkererway
+ *
+ */
+public interface CompiledDFA {
+
+	/**
+	 * Getter for the number of states
+	 * @return number of states in the table
+	 */
+	public abstract int getStateCount();
+
+	/**
+	 * Getter for q0
+	 * @return the start state id
+	 */
+	public abstract int getStartState();
+
+	/**
+	 * Getter for the alphabet Sigma
+	 * @return a copy of the alphabet in column order
+	 */
+	public abstract char[] getABC();
+
+	/**
+	 * Accessor for the state type
+	 * @param state the state id, may be -1
+	 * @return true if the state is final
+	 */
+	public abstract boolean isFinal(int state);
+
+	/**
+	 * Uses the transition function delta
+	 * @param state the source state id, may be -1
+	 * @param c the symbol
+	 * @return the sink state id, or -1 if there is no transition
+	 */
+	public abstract int step(int state, char c);
+
+	/**
+	 * Runs the table on the input. As in <code>DFA.accepts</code>
+	 * the string "e" stands for the empty string.
+	 * @param input the input string
+	 * @return the state reached, or -1 if the run got stuck
+	 */
+	public default int run(String input) {
+		int state = getStartState();
+		if (input.length() == 1 && input.charAt(0) == 'e') {
+			return state;
+		}
+		for (int i = 0; i < input.length() && state >= 0; i++) {
+			state = step(state, input.charAt(i));
+		}
+		return state;
+	}
+
+	/**
+	 * Simulates the table on input s to determine whether it accepts s.
+	 * @param s the input string
+	 * @return true if s is in the language and false otherwise
+	 */
+	public default boolean accepts(String s) {
+		return isFinal(run(s));
+	}
+}
@@ -33,6 +33,14 @@ public class DFA implements DFAInterface{
 		}
 		start = s;
 	}
+	/**
+	 * Marks an existing state as the start state, keeping its type
+	 * @param name the label of the state
+	 */
+	public void setStartState(String name){
+		start = checkIfExists(name);
+	}
+
 	/* (non-Javadoc)
 	 * @see p1.DFAInterface#addState(java.lang.String)
 	 */
@@ -0,0 +1,155 @@
+package fa.dfa;
+
+/**
+ * Splits a character sequence into tokens using a compiled DFA.
+ * Each token is the longest prefix of the remaining input that the
+ * DFA accepts (maximal munch). Scanning does not allocate, so one
+ * scanner can be reused over any number of buffers, including
+ * <code>java.nio.CharBuffer</code>s.
+ * If no non-empty prefix is accepted, a one character error token
+ * with state -1 is reported and scanning continues after it.
+ * @author geoffreymeier
+ * @author parkererway
+ *
+ */
+public class DFAScanner {
+	/**
+	 * The compiled DFA
+	 */
+	private CompiledDFA table;
+
+	/**
+	 * Start state of the table
+	 */
+	private int start;
+
+	/**
+	 * States from which a final state is still reachable
+	 */
+	private boolean[] live;
+
+	/**
+	 * Input being scanned, current position and end of the input
+	 */
+	private CharSequence input;
+	private int position, end;
+
+	/**
+	 * Bounds and accepting state of the last token
+	 */
+	private int tokenStart, tokenEnd, tokenState;
+
+	/**
+	 * Accepting state of the last longestMatch call
+	 */
+	private int lastState;
+
+	/**
+	 * Default constructor
+	 * @param table the compiled DFA to scan with
+	 */
+	public DFAScanner(CompiledDFA table) {
+		this.table = table;
+		this.start = table.getStartState();
+		this.live = DFATable.liveStates(table);
+	}
+
+	/**
+	 * Start scanning a whole input
+	 * @param input the characters to scan
+	 */
+	public void reset(CharSequence input) {
+		reset(input, 0, input.length());
+	}
+
+	/**
+	 * Start scanning part of an input
+	 * @param input the characters to scan
+	 * @param offset index of the first character to scan
+	 * @param end index after the last character to scan
+	 */
+	public void reset(CharSequence input, int offset, int end) {
+		this.input = input;
+		this.position = offset;
+		this.end = end;
+		this.tokenStart = this.tokenEnd = offset;
+		this.tokenState = -1;
+	}
+
+	/**
+	 * Scan the next token
+	 * @return false if the end of the input was reached
+	 */
+	public boolean next() {
+		if (position >= end) {
+			return false;
+		}
+		tokenStart = position;
+		tokenEnd = longestMatch(input, position, end);
+		if (tokenEnd < 0) {
+			tokenEnd = position + 1;
+			tokenState = -1;
+		} else {
+			tokenState = lastState;
+		}
+		position = tokenEnd;
+		return true;
+	}
+
+	/**
+	 * Find the longest non-empty accepted prefix starting at offset
+	 * @param input the characters to scan
+	 * @param offset index of the first character
+	 * @param end index after the last character that may be used
+	 * @return the index after the match, or -1 if there is none
+	 * @see #getMatchState()
+	 */
+	public int longestMatch(CharSequence input, int offset, int end) {
+		int state = start;
+		int matchEnd = -1;
+		lastState = -1;
+		for (int i = offset; i < end; i++) {
+			state = table.step(state, input.charAt(i));
+			if (state < 0 || !live[state]) {
+				break;
+			}
+			if (table.isFinal(state)) {
+				matchEnd = i + 1;
+				lastState = state;
+			}
+		}
+		return matchEnd;
+	}
+
+	/**
+	 * Getter for the accepting state of the last longestMatch call
+	 * @return the state id in the table, or -1 if there was no match
+	 */
+	public int getMatchState() {
+		return lastState;
+	}
+
+	/**
+	 * Getter for the start of the last token
+	 * @return index of the first character of the token
+	 */
+	public int getTokenStart() {
+		return tokenStart;
+	}
+
+	/**
+	 * Getter for the end of the last token
+	 * @return index after the last character of the token
+	 */
+	public int getTokenEnd() {
+		return tokenEnd;
+	}
+
+	/**
+	 * Getter for the accepting state of the last token
+	 * @return the state id in the table, or -1 for an error token
+	 */
+	public int getTokenState() {
+		return tokenState;
+	}
+}
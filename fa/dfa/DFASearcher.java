@@ -0,0 +1,330 @@
+package fa.dfa;
+
+import java.util.Arrays;
+
+/**
+ * Finds matches of a compiled DFA anywhere in a character sequence,
+ * without adding a self loop on every symbol to the start state.
+ * Matches are reported left to right, each being the longest
+ * non-empty accepted substring at the leftmost position where one
+ * exists, and do not overlap.
+ * <p>
+ * The text is read in one left to right pass that starts a new run of
+ * the DFA at every position. Runs that reach the same state are merged,
+ * keeping the earliest start, so at most one run per state is stepped
+ * for each character and a search never goes back to retry a position.
+ * Once a match end is known no new runs are started, and the pass goes
+ * on only while the match or a run that started before it can still
+ * reach a final state.
+ * Positions where no run is active are skipped with a prefilter:
+ * if every match begins with the same literal prefix it is located
+ * with <code>String.indexOf</code>, otherwise the possible first
+ * characters are looked up in a table.
+ * <p>
+ * For a DFA with m states and a text of n characters, a text without
+ * matches costs O(n m) steps. The characters read past the end of a
+ * match, to make sure it is the longest one and that no earlier run
+ * accepts, are read again by the next call, so in the worst case (long
+ * unfinished runs overlapping many short matches) a full search costs
+ * O(n^2 m).
+ * @author geoffreymeier
+ * @author parkererway
+ *
+ */
+public class DFASearcher {
+	/**
+	 * The compiled DFA and its start state
+	 */
+	private CompiledDFA table;
+	private int start;
+
+	/**
+	 * States from which a final state is still reachable
+	 */
+	private boolean[] live;
+
+	/**
+	 * Literal prefix shared by every match, may be empty
+	 */
+	private String prefix;
+
+	/**
+	 * Characters that can start a match, indexed by character
+	 */
+	private boolean[] first;
+
+	/**
+	 * Input being searched, current position and end of the input
+	 */
+	private CharSequence input;
+	private int position, end;
+
+	/**
+	 * Bounds and accepting state of the last match
+	 */
+	private int matchStart, matchEnd, matchState;
+
+	/**
+	 * Active runs, as parallel lists of state and start position, and
+	 * the lists being built for the next character
+	 */
+	private int[] runState, runStart, nextState, nextStart;
+
+	/**
+	 * Index of each state in the list of generation seen[state]
+	 */
+	private int[] slot, seen;
+	private int generation;
+
+	/**
+	 * Default constructor
+	 * @param table the compiled DFA to search with
+	 */
+	public DFASearcher(CompiledDFA table) {
+		this.table = table;
+		this.start = table.getStartState();
+		this.live = DFATable.liveStates(table);
+		char[] abc = table.getABC();
+		int n = table.getStateCount();
+		runState = new int[n];
+		runStart = new int[n];
+		nextState = new int[n];
+		nextStart = new int[n];
+		slot = new int[n];
+		seen = new int[n];
+		generation = 1;
+
+		int max = -1;
+		for (char c : abc) {
+			max = Math.max(max, c);
+		}
+		first = new boolean[max + 1];
+		for (char c : abc) {
+			int t = table.step(start, c);
+			if (t >= 0 && live[t]) {
+				first[c] = true;
+			}
+		}
+
+		// follow the start state while only one symbol keeps the run alive
+		StringBuilder sb = new StringBuilder();
+		boolean[] seen = new boolean[table.getStateCount()];
+		int s = start;
+		while (!seen[s]) {
+			seen[s] = true;
+			int only = -1;
+			int count = 0;
+			for (int col = 0; col < abc.length; col++) {
+				int t = table.step(s, abc[col]);
+				if (t >= 0 && live[t]) {
+					count++;
+					only = col;
+				}
+			}
+			if (count != 1) {
+				break;
+			}
+			sb.append(abc[only]);
+			s = table.step(s, abc[only]);
+			if (table.isFinal(s)) {
+				break;
+			}
+		}
+		prefix = sb.toString();
+	}
+
+	/**
+	 * Start searching a whole input
+	 * @param input the characters to search
+	 */
+	public void reset(CharSequence input) {
+		reset(input, 0, input.length());
+	}
+
+	/**
+	 * Start searching part of an input
+	 * @param input the characters to search
+	 * @param offset index of the first character to search
+	 * @param end index after the last character to search
+	 */
+	public void reset(CharSequence input, int offset, int end) {
+		this.input = input;
+		this.position = offset;
+		this.end = end;
+		this.matchStart = this.matchEnd = offset;
+		this.matchState = -1;
+	}
+
+	/**
+	 * Find the next match
+	 * @return true if a match was found, false at the end of the input
+	 */
+	public boolean find() {
+		int count = 0;
+		int bestStart = -1, bestEnd = -1, bestState = -1;
+		int i = position;
+		while (i < end) {
+			if (count == 0) {
+				if (bestStart >= 0) {
+					break;
+				}
+				i = candidate(i);
+				if (i < 0) {
+					break;
+				}
+			}
+			if (bestStart < 0 && seen[start] != generation) {
+				// an active run in the start state began earlier, keep it
+				runState[count] = start;
+				runStart[count] = i;
+				count++;
+			}
+
+			// step every run, merging runs that reach the same state
+			char c = input.charAt(i);
+			nextGeneration();
+			int next = 0;
+			for (int r = 0; r < count; r++) {
+				int t = table.step(runState[r], c);
+				if (t < 0 || !live[t]) {
+					continue;
+				}
+				if (seen[t] == generation) {
+					int k = slot[t];
+					nextStart[k] = Math.min(nextStart[k], runStart[r]);
+				} else {
+					seen[t] = generation;
+					slot[t] = next;
+					nextState[next] = t;
+					nextStart[next] = runStart[r];
+					next++;
+				}
+			}
+			i++;
+
+			for (int r = 0; r < next; r++) {
+				int t = nextState[r];
+				if (table.isFinal(t) && (bestStart < 0 || nextStart[r] <= bestStart)) {
+					bestStart = nextStart[r];
+					bestEnd = i;
+					bestState = t;
+				}
+			}
+			if (bestStart >= 0) {
+				// runs that started after the match can no longer win
+				int kept = 0;
+				for (int r = 0; r < next; r++) {
+					if (nextStart[r] <= bestStart) {
+						slot[nextState[r]] = kept;
+						nextState[kept] = nextState[r];
+						nextStart[kept] = nextStart[r];
+						kept++;
+					} else {
+						seen[nextState[r]] = 0;
+					}
+				}
+				next = kept;
+			}
+
+			int[] tmp = runState;
+			runState = nextState;
+			nextState = tmp;
+			tmp = runStart;
+			runStart = nextStart;
+			nextStart = tmp;
+			count = next;
+		}
+		nextGeneration();
+		if (bestStart < 0) {
+			position = end;
+			return false;
+		}
+		matchStart = bestStart;
+		matchEnd = bestEnd;
+		matchState = bestState;
+		position = bestEnd;
+		return true;
+	}
+
+	/**
+	 * Start a new generation of run lists, so that no state is seen
+	 */
+	private void nextGeneration() {
+		if (generation == Integer.MAX_VALUE) {
+			Arrays.fill(seen, 0);
+			generation = 0;
+		}
+		generation++;
+	}
+
+	/**
+	 * Next position at or after from where a match may start
+	 * @param from the first position to consider
+	 * @return the position, or -1 if no match can start before end
+	 */
+	private int candidate(int from) {
+		int length = prefix.length();
+		if (length > 0) {
+			int last = end - length;
+			if (input instanceof String) {
+				int i = ((String) input).indexOf(prefix, from);
+				return i <= last ? i : -1;
+			}
+			char c = prefix.charAt(0);
+			for (int i = from; i <= last; i++) {
+				if (input.charAt(i) == c && regionMatches(i)) {
+					return i;
+				}
+			}
+			return -1;
+		}
+		for (int i = from; i < end; i++) {
+			char c = input.charAt(i);
+			if (c < first.length && first[c]) {
+				return i;
+			}
+		}
+		return -1;
+	}
+
+	private boolean regionMatches(int offset) {
+		for (int i = 1; i < prefix.length(); i++) {
+			if (input.charAt(offset + i) != prefix.charAt(i)) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * Getter for the literal prefix used by the prefilter
+	 * @return the prefix every match starts with, may be empty
+	 */
+	public String getPrefix() {
+		return prefix;
+	}
+
+	/**
+	 * Getter for the start of the last match
+	 * @return index of the first character of the match
+	 */
+	public int getMatchStart() {
+		return matchStart;
+	}
+
+	/**
+	 * Getter for the end of the last match
+	 * @return index after the last character of the match
+	 */
+	public int getMatchEnd() {
+		return matchEnd;
+	}
+
+	/**
+	 * Getter for the accepting state of the last match
+	 * @return the state id in the table
+	 */
+	public int getMatchState() {
+		return matchState;
+	}
+}
@@ -74,6 +74,16 @@ public class DFAState extends State{
 			}
 		return delta.get(symb);
 	}
-	
+
+	/**
+	 * Retrieves the state that <code>this</code> transitions to
+	 * on the given symbol without treating a missing transition as an error
+	 * @param symb - the alphabet symbol
+	 * @return the new state, or null if there is no such transition
+	 */
+	DFAState getToIfPresent(char symb){
+		return delta.get(symb);
+	}
+
 	
 }
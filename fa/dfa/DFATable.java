@@ -0,0 +1,626 @@
+package fa.dfa;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Compiled form of a DFA. States are numbered 0..n-1 and the
+ * transition function is kept in one flat integer array indexed
+ * by state and alphabet column, so matching does not go through
+ * <code>DFAState</code> objects or hash maps.
+ * A missing transition is stored as -1 and rejects the input.
+ * For tables too large for the heap see <code>OffHeapDFATable</code>.
+ * @author geoffreymeier
+ * @author parkererway
+ *
+ */
+public class DFATable implements CompiledDFA {
+	/**
+	 * Operations supported by the product construction
+	 */
+	public enum ProductOp {
+		INTERSECTION, UNION, DIFFERENCE, SYMMETRIC_DIFFERENCE;
+
+		/**
+		 * Decide whether a product state is final
+		 * @param a true if the left component is final
+		 * @param b true if the right component is final
+		 * @return true if the pair is final under this operation
+		 */
+		boolean accept(boolean a, boolean b) {
+			switch (this) {
+			case INTERSECTION:
+				return a && b;
+			case UNION:
+				return a || b;
+			case DIFFERENCE:
+				return a && !b;
+			default:
+				return a != b;
+			}
+		}
+	}
+
+	/**
+	 * Alphabet, one symbol per column of the table
+	 */
+	final char[] abc;
+
+	/**
+	 * Maps a character to its column, -1 if not in the alphabet
+	 */
+	final int[] columns;
+
+	/**
+	 * Number of states and number of columns
+	 */
+	final int numStates, numSymbols;
+
+	/**
+	 * Transition table, delta[state * numSymbols + column]
+	 */
+	final int[] delta;
+
+	/**
+	 * Final state flags
+	 */
+	final boolean[] finals;
+
+	/**
+	 * Initial state
+	 */
+	final int start;
+
+	/**
+	 * Compile a DFA into table form. States keep the order in which
+	 * they were added to the DFA.
+	 * @param dfa the DFA to compile
+	 */
+	public DFATable(DFA dfa) {
+		Set<Character> ordAbc = dfa.getABC();
+		abc = new char[ordAbc.size()];
+		int i = 0;
+		for (char c : ordAbc) {
+			abc[i++] = c;
+		}
+		columns = buildColumns(abc);
+		numSymbols = abc.length;
+
+		Map<DFAState, Integer> ids = new HashMap<DFAState, Integer>();
+		for (DFAState s : dfa.getStates()) {
+			ids.put(s, ids.size());
+		}
+		numStates = ids.size();
+		delta = new int[numStates * numSymbols];
+		finals = new boolean[numStates];
+		for (DFAState s : dfa.getStates()) {
+			int id = ids.get(s);
+			finals[id] = s.isFinal();
+			for (int col = 0; col < numSymbols; col++) {
+				DFAState to = s.getToIfPresent(abc[col]);
+				delta[id * numSymbols + col] = to == null ? -1 : ids.get(to);
+			}
+		}
+		start = ids.get(dfa.getStartState());
+	}
+
+	/**
+	 * Build a table directly from its arrays. The arrays are not copied.
+	 * @param abc the alphabet, one symbol per column
+	 * @param delta transitions indexed by state * abc.length + column, -1 for none
+	 * @param finals final state flags, one per state
+	 * @param start the initial state
+	 */
+	public DFATable(char[] abc, int[] delta, boolean[] finals, int start) {
+		this.abc = abc;
+		this.columns = buildColumns(abc);
+		this.numSymbols = abc.length;
+		this.numStates = finals.length;
+		this.delta = delta;
+		this.finals = finals;
+		this.start = start;
+	}
+
+	/**
+	 * Map each character of the alphabet to its column
+	 * @param abc the alphabet, one symbol per column
+	 * @return columns indexed by character, -1 if not in the alphabet
+	 */
+	static int[] buildColumns(char[] abc) {
+		int max = -1;
+		for (char c : abc) {
+			max = Math.max(max, c);
+		}
+		int[] ret = new int[max + 1];
+		Arrays.fill(ret, -1);
+		for (int i = 0; i < abc.length; i++) {
+			ret[abc[i]] = i;
+		}
+		return ret;
+	}
+
+	/**
+	 * Getter for the number of states
+	 * @return number of states in the table
+	 */
+	@Override
+	public int getStateCount() {
+		return numStates;
+	}
+
+	/**
+	 * Getter for q0
+	 * @return the start state id
+	 */
+	@Override
+	public int getStartState() {
+		return start;
+	}
+
+	/**
+	 * Getter for the alphabet Sigma
+	 * @return a copy of the alphabet in column order
+	 */
+	@Override
+	public char[] getABC() {
+		return abc.clone();
+	}
+
+	/**
+	 * Accessor for the state type
+	 * @param state the state id, may be -1
+	 * @return true if the state is final
+	 */
+	@Override
+	public boolean isFinal(int state) {
+		return state >= 0 && finals[state];
+	}
+
+	/**
+	 * Column of a symbol in the table
+	 * @param c the symbol
+	 * @return the column, or -1 if c is not in the alphabet
+	 */
+	public int column(char c) {
+		return c < columns.length ? columns[c] : -1;
+	}
+
+	/**
+	 * Uses the transition function delta
+	 * @param state the source state id, may be -1
+	 * @param c the symbol
+	 * @return the sink state id, or -1 if there is no transition
+	 */
+	@Override
+	public int step(int state, char c) {
+		int col = column(c);
+		if (state < 0 || col < 0) {
+			return -1;
+		}
+		return delta[state * numSymbols + col];
+	}
+
+	/**
+	 * Find the states from which a final state can be reached.
+	 * Once a run leaves these states it can never accept.
+	 * @param t the compiled DFA
+	 * @return flags indexed by state id
+	 */
+	static boolean[] liveStates(CompiledDFA t) {
+		int n = t.getStateCount();
+		char[] abc = t.getABC();
+		int[][] back = new int[n][];
+		int[] count = new int[n];
+		for (int s = 0; s < n; s++) {
+			for (char c : abc) {
+				int to = t.step(s, c);
+				if (to >= 0) {
+					count[to]++;
+				}
+			}
+		}
+		for (int s = 0; s < n; s++) {
+			back[s] = new int[count[s]];
+			count[s] = 0;
+		}
+		for (int s = 0; s < n; s++) {
+			for (char c : abc) {
+				int to = t.step(s, c);
+				if (to >= 0) {
+					back[to][count[to]++] = s;
+				}
+			}
+		}
+		boolean[] live = new boolean[n];
+		int[] stack = new int[n];
+		int top = 0;
+		for (int s = 0; s < n; s++) {
+			if (t.isFinal(s)) {
+				live[s] = true;
+				stack[top++] = s;
+			}
+		}
+		while (top > 0) {
+			int s = stack[--top];
+			for (int p : back[s]) {
+				if (!live[p]) {
+					live[p] = true;
+					stack[top++] = p;
+				}
+			}
+		}
+		return live;
+	}
+
+	/**
+	 * Product with another table
+	 * @param other the right operand
+	 * @param op the operation
+	 * @return minimal table for the combined language
+	 */
+	public DFATable product(DFATable other, ProductOp op) {
+		return product(this, other, op, true);
+	}
+
+	/**
+	 * Product with another table
+	 * @param other the right operand
+	 * @param op the operation
+	 * @param minimize false to skip minimizing the result
+	 * @return table for the combined language
+	 */
+	public DFATable product(DFATable other, ProductOp op, boolean minimize) {
+		return product(this, other, op, minimize);
+	}
+
+	/**
+	 * @param other the right operand
+	 * @return table accepting strings accepted by both
+	 */
+	public DFATable intersection(DFATable other) {
+		return product(this, other, ProductOp.INTERSECTION);
+	}
+
+	/**
+	 * @param other the right operand
+	 * @return table accepting strings accepted by either
+	 */
+	public DFATable union(DFATable other) {
+		return product(this, other, ProductOp.UNION);
+	}
+
+	/**
+	 * @param other the right operand
+	 * @return table accepting strings accepted by this but not by other
+	 */
+	public DFATable difference(DFATable other) {
+		return product(this, other, ProductOp.DIFFERENCE);
+	}
+
+	/**
+	 * @param other the right operand
+	 * @return table accepting strings accepted by exactly one of the two
+	 */
+	public DFATable symmetricDifference(DFATable other) {
+		return product(this, other, ProductOp.SYMMETRIC_DIFFERENCE);
+	}
+
+	/**
+	 * Product construction over the union of both alphabets.
+	 * Only pairs reachable from the pair of start states are built,
+	 * and a missing transition on either side is treated as a
+	 * non-final sink. The result is minimized.
+	 * @param a the left operand
+	 * @param b the right operand
+	 * @param op the operation
+	 * @return minimal table for the combined language
+	 */
+	public static DFATable product(DFATable a, DFATable b, ProductOp op) {
+		return product(a, b, op, true);
+	}
+
+	/**
+	 * Product construction, see {@link #product(DFATable, DFATable, ProductOp)}.
+	 * Callers that only run the result once, or minimize it later,
+	 * can skip the minimization.
+	 * @param a the left operand
+	 * @param b the right operand
+	 * @param op the operation
+	 * @param minimize false to return the reachable product as built
+	 * @return table for the combined language
+	 */
+	public static DFATable product(DFATable a, DFATable b, ProductOp op, boolean minimize) {
+		Set<Character> ordAbc = new LinkedHashSet<Character>();
+		for (char c : a.abc) {
+			ordAbc.add(c);
+		}
+		for (char c : b.abc) {
+			ordAbc.add(c);
+		}
+		int k = ordAbc.size();
+		char[] abc = new char[k];
+		int[] colA = new int[k];
+		int[] colB = new int[k];
+		int i = 0;
+		for (char c : ordAbc) {
+			abc[i] = c;
+			colA[i] = a.column(c);
+			colB[i] = b.column(c);
+			i++;
+		}
+
+		// pairs are numbered in BFS order, so the queue is just an index
+		Map<Long, Integer> ids = new HashMap<Long, Integer>();
+		int[] left = new int[16];
+		int[] right = new int[16];
+		int[] delta = new int[16 * Math.max(k, 1)];
+		int count = 0;
+
+		left[0] = a.start;
+		right[0] = b.start;
+		ids.put(pairKey(a.start, b.start), 0);
+		count = 1;
+
+		for (int cur = 0; cur < count; cur++) {
+			int p = left[cur];
+			int q = right[cur];
+			for (int col = 0; col < k; col++) {
+				int p2 = (p < 0 || colA[col] < 0) ? -1 : a.delta[p * a.numSymbols + colA[col]];
+				int q2 = (q < 0 || colB[col] < 0) ? -1 : b.delta[q * b.numSymbols + colB[col]];
+				int to = -1;
+				// the dead pair is non-final under every operation
+				if (p2 >= 0 || q2 >= 0) {
+					Long key = pairKey(p2, q2);
+					Integer id = ids.get(key);
+					if (id == null) {
+						if (count == left.length) {
+							left = Arrays.copyOf(left, count * 2);
+							right = Arrays.copyOf(right, count * 2);
+						}
+						id = count++;
+						left[id] = p2;
+						right[id] = q2;
+						ids.put(key, id);
+					}
+					to = id;
+				}
+				if ((cur + 1) * k > delta.length) {
+					delta = Arrays.copyOf(delta, delta.length * 2);
+				}
+				delta[cur * k + col] = to;
+			}
+		}
+
+		boolean[] finals = new boolean[count];
+		for (int s = 0; s < count; s++) {
+			finals[s] = op.accept(a.isFinal(left[s]), b.isFinal(right[s]));
+		}
+		DFATable ret = new DFATable(abc, Arrays.copyOf(delta, count * k), finals, 0);
+		return minimize ? ret.minimize() : ret;
+	}
+
+	private static long pairKey(int p, int q) {
+		return ((long) (p + 1) << 32) | (q + 1);
+	}
+
+	/**
+	 * Minimize the table by partition refinement. Missing transitions
+	 * are treated as an implicit non-final sink, and states that cannot
+	 * be reached from the start state or cannot reach a final state
+	 * are dropped.
+	 * Blocks are split with Hopcroft's algorithm, always queueing the
+	 * smaller half, so this takes O(k n log n) time for n states and k
+	 * symbols.
+	 * @return a new minimal table, states numbered in BFS order from q0
+	 */
+	public DFATable minimize() {
+		int n = numStates;
+		int k = numSymbols;
+		int sink = n;
+		int total = n + 1;
+
+		boolean anyFinal = false;
+		for (int s = 0; s < n; s++) {
+			anyFinal |= finals[s];
+		}
+		if (!anyFinal) {
+			return new DFATable(abc, filled(k, -1), new boolean[1], 0);
+		}
+
+		// predecessors of t on column col are
+		// preds[predStart[col * total + t] .. predStart[col * total + t + 1])
+		int[] predStart = new int[k * total + 1];
+		for (int s = 0; s < total; s++) {
+			for (int col = 0; col < k; col++) {
+				predStart[col * total + target(s, col) + 1]++;
+			}
+		}
+		for (int i = 0; i < k * total; i++) {
+			predStart[i + 1] += predStart[i];
+		}
+		int[] preds = new int[k * total];
+		int[] fill = Arrays.copyOf(predStart, k * total);
+		for (int s = 0; s < total; s++) {
+			for (int col = 0; col < k; col++) {
+				preds[fill[col * total + target(s, col)]++] = s;
+			}
+		}
+
+		// blocks are ranges of elems: elems[first[b] .. end[b])
+		int[] elems = new int[total];
+		int[] loc = new int[total];
+		int[] cls = new int[total];
+		int[] first = new int[total];
+		int[] end = new int[total];
+		int[] marked = new int[total];
+		int count = 0;
+		int e = 0;
+		for (int pass = 0; pass < 2; pass++) {
+			int from = e;
+			for (int s = 0; s < total; s++) {
+				if ((s < n && finals[s]) == (pass == 1)) {
+					elems[e] = s;
+					loc[s] = e++;
+					cls[s] = count;
+				}
+			}
+			first[count] = from;
+			end[count] = e;
+			count++;
+		}
+
+		// a split block keeps its place in the queue and the new block,
+		// always the smaller part, is queued as well
+		int[] work = new int[total];
+		int top = 0;
+		work[top++] = 1;
+		int[] splitter = new int[total];
+		int[] touched = new int[total];
+		while (top > 0) {
+			int b = work[--top];
+			// copy the splitter, splitting may move its elements
+			int length = end[b] - first[b];
+			System.arraycopy(elems, first[b], splitter, 0, length);
+			for (int col = 0; col < k; col++) {
+				int numTouched = 0;
+				for (int i = 0; i < length; i++) {
+					int t = splitter[i];
+					for (int j = predStart[col * total + t]; j < predStart[col * total + t + 1]; j++) {
+						int p = preds[j];
+						int x = cls[p];
+						int pos = first[x] + marked[x];
+						if (loc[p] < pos) {
+							continue;
+						}
+						if (marked[x] == 0) {
+							touched[numTouched++] = x;
+						}
+						// swap p to the end of the marked prefix of its block
+						int q = elems[pos];
+						elems[loc[p]] = q;
+						loc[q] = loc[p];
+						elems[pos] = p;
+						loc[p] = pos;
+						marked[x]++;
+					}
+				}
+				for (int i = 0; i < numTouched; i++) {
+					int x = touched[i];
+					int m = marked[x];
+					marked[x] = 0;
+					if (m == end[x] - first[x]) {
+						continue;
+					}
+					// the new block takes the smaller part
+					int y = count++;
+					if (m <= end[x] - first[x] - m) {
+						first[y] = first[x];
+						end[y] = first[x] + m;
+						first[x] += m;
+					} else {
+						first[y] = first[x] + m;
+						end[y] = end[x];
+						end[x] = first[x] + m;
+					}
+					for (int j = first[y]; j < end[y]; j++) {
+						cls[elems[j]] = y;
+					}
+					work[top++] = y;
+				}
+			}
+		}
+
+		int deadCls = cls[sink];
+		if (cls[start] == deadCls) {
+			return new DFATable(abc, filled(k, -1), new boolean[1], 0);
+		}
+		int[] rep = new int[count];
+		Arrays.fill(rep, -1);
+		for (int s = n - 1; s >= 0; s--) {
+			rep[cls[s]] = s;
+		}
+
+		int[] newId = filled(count, -1);
+		int[] order = new int[count];
+		int size = 0;
+		newId[cls[start]] = size;
+		order[size++] = cls[start];
+		int[] newDelta = new int[count * k];
+		for (int cur = 0; cur < size; cur++) {
+			int r = rep[order[cur]];
+			for (int col = 0; col < k; col++) {
+				int t = delta[r * k + col];
+				int tc = t < 0 ? deadCls : cls[t];
+				if (tc == deadCls) {
+					newDelta[cur * k + col] = -1;
+				} else {
+					if (newId[tc] < 0) {
+						newId[tc] = size;
+						order[size++] = tc;
+					}
+					newDelta[cur * k + col] = newId[tc];
+				}
+			}
+		}
+		boolean[] newFinals = new boolean[size];
+		for (int s = 0; s < size; s++) {
+			newFinals[s] = finals[rep[order[s]]];
+		}
+		return new DFATable(abc, Arrays.copyOf(newDelta, size * k), newFinals, 0);
+	}
+
+	/**
+	 * Transition of minimize's extended table, where state n is the sink
+	 */
+	private int target(int s, int col) {
+		int t = s == numStates ? -1 : delta[s * numSymbols + col];
+		return t < 0 ? numStates : t;
+	}
+
+	private static int[] filled(int length, int value) {
+		int[] ret = new int[length];
+		Arrays.fill(ret, value);
+		return ret;
+	}
+
+	/**
+	 * Convert the table back into a DFA object. States are named by
+	 * their ids; if some transition is missing a non-final state named
+	 * "dead" is added so that the DFA is complete.
+	 * @return the equivalent DFA
+	 */
+	public DFA toDFA() {
+		DFA dfa = new DFA();
+		boolean needDead = false;
+		for (int s = 0; s < numStates; s++) {
+			String name = String.valueOf(s);
+			if (finals[s]) {
+				dfa.addFinalState(name);
+			} else {
+				dfa.addState(name);
+			}
+		}
+		dfa.setStartState(String.valueOf(start));
+		for (int t : delta) {
+			needDead |= t < 0;
+		}
+		if (needDead) {
+			dfa.addState("dead");
+		}
+		for (int s = 0; s < numStates; s++) {
+			for (int col = 0; col < numSymbols; col++) {
+				int t = delta[s * numSymbols + col];
+				dfa.addTransition(String.valueOf(s), abc[col], t < 0 ? "dead" : String.valueOf(t));
+			}
+		}
+		if (needDead) {
+			for (char c : abc) {
+				dfa.addTransition("dead", c, "dead");
+			}
+		}
+		return dfa;
+	}
+}
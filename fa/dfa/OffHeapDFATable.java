@@ -0,0 +1,170 @@
+package fa.dfa;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.IntBuffer;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Compiled DFA whose transition table and final state bitmap live in
+ * direct (off-heap) buffers. The heap only holds the alphabet, so the
+ * size of the automaton does not add to garbage collection work.
+ * Matching reads the buffers directly and behaves like
+ * <code>DFATable</code>; both implement <code>CompiledDFA</code>, so
+ * the scanner, searcher and batch matcher accept either. A table is
+ * limited to 2^31 - 1 bytes, about 500 million transitions.
+ * @author geoffreymeier
+ * @author parkererway
+ *
+ */
+public class OffHeapDFATable implements CompiledDFA {
+	/**
+	 * Alphabet, one symbol per column of the table
+	 */
+	private char[] abc;
+
+	/**
+	 * Maps a character to its column, -1 if not in the alphabet
+	 */
+	private int[] columns;
+
+	/**
+	 * Number of states and number of columns
+	 */
+	private int numStates, numSymbols;
+
+	/**
+	 * Transition table, delta[state * numSymbols + column], -1 for none
+	 */
+	private IntBuffer delta;
+
+	/**
+	 * Final states, one bit per state
+	 */
+	private ByteBuffer finals;
+
+	/**
+	 * Initial state
+	 */
+	private int start;
+
+	/**
+	 * Compile a DFA straight into off-heap memory, without building
+	 * an on-heap table first. States keep the order in which they
+	 * were added to the DFA.
+	 * @param dfa the DFA to compile
+	 */
+	public OffHeapDFATable(DFA dfa) {
+		Set<Character> ordAbc = dfa.getABC();
+		char[] symbols = new char[ordAbc.size()];
+		int i = 0;
+		for (char c : ordAbc) {
+			symbols[i++] = c;
+		}
+		Map<DFAState, Integer> ids = new HashMap<DFAState, Integer>();
+		for (DFAState s : dfa.getStates()) {
+			ids.put(s, ids.size());
+		}
+		allocate(symbols, ids.size());
+
+		for (DFAState s : dfa.getStates()) {
+			int id = ids.get(s);
+			if (s.isFinal()) {
+				setFinal(id);
+			}
+			for (int col = 0; col < numSymbols; col++) {
+				DFAState to = s.getToIfPresent(abc[col]);
+				delta.put(id * numSymbols + col, to == null ? -1 : ids.get(to));
+			}
+		}
+		start = ids.get(dfa.getStartState());
+	}
+
+	/**
+	 * Copy a compiled table into off-heap memory
+	 * @param table the table to copy
+	 */
+	public OffHeapDFATable(DFATable table) {
+		allocate(table.abc, table.numStates);
+		delta.put(0, table.delta);
+		for (int s = 0; s < numStates; s++) {
+			if (table.finals[s]) {
+				setFinal(s);
+			}
+		}
+		start = table.start;
+	}
+
+	private void allocate(char[] symbols, int states) {
+		abc = symbols;
+		numSymbols = symbols.length;
+		numStates = states;
+		long bytes = (long) numStates * numSymbols * Integer.BYTES;
+		if (bytes > Integer.MAX_VALUE) {
+			throw new IllegalArgumentException("Transition table of " + bytes + " bytes is too large");
+		}
+		delta = ByteBuffer.allocateDirect((int) bytes).order(ByteOrder.nativeOrder()).asIntBuffer();
+		finals = ByteBuffer.allocateDirect((numStates + 7) / 8);
+
+		columns = DFATable.buildColumns(abc);
+	}
+
+	private void setFinal(int state) {
+		int i = state >>> 3;
+		finals.put(i, (byte) (finals.get(i) | (1 << (state & 7))));
+	}
+
+	/**
+	 * Getter for the number of states
+	 * @return number of states in the table
+	 */
+	@Override
+	public int getStateCount() {
+		return numStates;
+	}
+
+	/**
+	 * Getter for q0
+	 * @return the start state id
+	 */
+	@Override
+	public int getStartState() {
+		return start;
+	}
+
+	/**
+	 * Getter for the alphabet Sigma
+	 * @return a copy of the alphabet in column order
+	 */
+	@Override
+	public char[] getABC() {
+		return abc.clone();
+	}
+
+	/**
+	 * Accessor for the state type
+	 * @param state the state id, may be -1
+	 * @return true if the state is final
+	 */
+	@Override
+	public boolean isFinal(int state) {
+		return state >= 0 && (finals.get(state >>> 3) & (1 << (state & 7))) != 0;
+	}
+
+	/**
+	 * Uses the transition function delta
+	 * @param state the source state id, may be -1
+	 * @param c the symbol
+	 * @return the sink state id, or -1 if there is no transition
+	 */
+	@Override
+	public int step(int state, char c) {
+		int col = c < columns.length ? columns[c] : -1;
+		if (state < 0 || col < 0) {
+			return -1;
+		}
+		return delta.get(state * numSymbols + col);
+	}
+}
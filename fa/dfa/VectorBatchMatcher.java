@@ -0,0 +1,98 @@
+package fa.dfa;
+
+import jdk.incubator.vector.IntVector;
+import jdk.incubator.vector.VectorSpecies;
+
+/**
+ * Vector API kernel for <code>BatchMatcher</code>. Each lane holds the
+ * current state of one input string, and a step gathers the next
+ * states of all lanes from the transition table at once. The
+ * characters of a group are translated to table columns in a scalar
+ * pass before the vector steps start.
+ * Only loaded when the <code>jdk.incubator.vector</code> module is
+ * present and <code>-Dfa.dfa.vector=true</code> is set, since it
+ * measured slower than matching one string at a time; compile and run
+ * with <code>--add-modules jdk.incubator.vector</code>.
+ * @author geoffreymeier
+ * @author parkererway
+ *
+ */
+final class VectorBatchMatcher implements BatchMatcher.Kernel {
+	private static final VectorSpecies<Integer> SPECIES = IntVector.SPECIES_PREFERRED;
+
+	/**
+	 * The compiled DFA
+	 */
+	private final DFATable table;
+
+	/**
+	 * Padded transition table: state n is a dead sink, column k stands
+	 * for any symbol outside the alphabet and column k + 1 keeps the
+	 * state unchanged, for lanes whose input has ended
+	 */
+	private final int[] delta;
+
+	/**
+	 * Number of columns of the padded table, and the two extra columns
+	 */
+	private final int width, unknown, stay;
+
+	/**
+	 * Build the padded table once for the given DFA
+	 * @param t the compiled DFA
+	 */
+	VectorBatchMatcher(DFATable t) {
+		table = t;
+		int n = t.numStates;
+		int k = t.numSymbols;
+		unknown = k;
+		stay = k + 1;
+		width = k + 2;
+		delta = new int[(n + 1) * width];
+		for (int s = 0; s <= n; s++) {
+			for (int col = 0; col < k; col++) {
+				int to = s == n ? -1 : t.delta[s * k + col];
+				delta[s * width + col] = to < 0 ? n : to;
+			}
+			delta[s * width + unknown] = n;
+			delta[s * width + stay] = s;
+		}
+	}
+
+	@Override
+	public void acceptsAll(String[] inputs, boolean[] ret) {
+		int lanes = SPECIES.length();
+		int n = table.numStates;
+		int[] index = new int[lanes];
+		int[] symbols = new int[0];
+		for (int base = 0; base < inputs.length; base += lanes) {
+			int m = Math.min(lanes, inputs.length - base);
+			int maxLength = 0;
+			for (int lane = 0; lane < m; lane++) {
+				maxLength = Math.max(maxLength, BatchMatcher.inputLength(inputs[base + lane]));
+			}
+			if (symbols.length < maxLength * lanes) {
+				symbols = new int[maxLength * lanes];
+			}
+			// columns are laid out position by position, one per lane
+			for (int lane = 0; lane < lanes; lane++) {
+				String s = lane < m ? inputs[base + lane] : null;
+				int length = s == null ? 0 : BatchMatcher.inputLength(s);
+				for (int pos = 0; pos < maxLength; pos++) {
+					int col = pos < length ? table.column(s.charAt(pos)) : stay;
+					symbols[pos * lanes + lane] = col < 0 ? unknown : col;
+				}
+			}
+
+			IntVector state = IntVector.broadcast(SPECIES, table.start);
+			for (int pos = 0; pos < maxLength; pos++) {
+				state.mul(width).add(IntVector.fromArray(SPECIES, symbols, pos * lanes)).intoArray(index, 0);
+				state = IntVector.fromArray(SPECIES, delta, 0, index, 0);
+			}
+			state.intoArray(index, 0);
+			for (int lane = 0; lane < m; lane++) {
+				ret[base + lane] = index[lane] < n && table.finals[index[lane]];
+			}
+		}
+	}
+}
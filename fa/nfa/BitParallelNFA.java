@@ -0,0 +1,267 @@
+package fa.nfa;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Bit-parallel simulation of an NFA. The set of current states is
+ * kept as a bit mask instead of a <code>Set</code> of states, and the
+ * transitions are precomputed as masks that are already closed under
+ * e transitions.
+ * With at most 64 states the whole set fits in one <code>long</code>,
+ * and each input symbol costs one table lookup per byte of the mask.
+ * Larger NFAs use several words and OR together one precomputed row
+ * per active state. NFAs over <code>MAX_STATES</code> states are
+ * rejected; check {@link #supports(NFA)} and fall back to
+ * <code>getDFA()</code>.
+ * @author geoffreymeier
+ * @author parkererway
+ *
+ */
+public class BitParallelNFA {
+	/**
+	 * Number of bits in a word
+	 */
+	private static final int WORD = 64;
+
+	/**
+	 * Largest NFA handled. Above this the per-state rows grow with
+	 * the square of the number of states, use <code>getDFA()</code>.
+	 */
+	public static final int MAX_STATES = 512;
+
+	/**
+	 * Largest number of precomputed masks, so that tables stay
+	 * addressable by int and well below the heap size
+	 */
+	private static final long MAX_MASKS = 1L << 26;
+
+	/**
+	 * Alphabet, one symbol per column
+	 */
+	private char[] abc;
+
+	/**
+	 * Maps a character to its column, -1 if not in the alphabet
+	 */
+	private int[] columns;
+
+	/**
+	 * Number of states and number of words per state set
+	 */
+	private int n, words;
+
+	/**
+	 * Closure of the start state and the final states, as masks
+	 */
+	private long[] init, finals;
+
+	/**
+	 * Single word case: successors of every byte of the mask,
+	 * indexed by ((column * chunks + chunk) << 8) | byte
+	 */
+	private long[] byteTable;
+
+	/**
+	 * Number of bytes in the single word mask
+	 */
+	private int chunks;
+
+	/**
+	 * Multi word case: successor mask of each state,
+	 * indexed by (column * n + state) * words + word
+	 */
+	private long[] rows;
+
+	/**
+	 * Check whether an NFA is small enough for this engine
+	 * @param nfa the NFA to simulate
+	 * @return true if the constructor will accept the NFA
+	 */
+	public static boolean supports(NFA nfa) {
+		return tableSize(nfa.getStates().size(), nfa.getABC().size()) <= MAX_MASKS;
+	}
+
+	/**
+	 * Number of masks precomputed for an NFA, or Long.MAX_VALUE if
+	 * it has more than MAX_STATES states
+	 */
+	private static long tableSize(int states, int symbols) {
+		if (states > MAX_STATES) {
+			return Long.MAX_VALUE;
+		}
+		long words = Math.max(1, (states + WORD - 1) / WORD);
+		long rows = (long) symbols * states * words;
+		long bytes = words == 1 ? (long) symbols * Math.max(1, (states + 7) / 8) * 256 : 0;
+		return Math.max(rows, bytes);
+	}
+
+	/**
+	 * Precompute the masks for the given NFA
+	 * @param nfa the NFA to simulate
+	 * @throws IllegalArgumentException if the NFA is too large,
+	 * 		   see {@link #supports(NFA)}
+	 */
+	public BitParallelNFA(NFA nfa) {
+		if (!supports(nfa)) {
+			throw new IllegalArgumentException("NFA with " + nfa.getStates().size() + " states and "
+					+ nfa.getABC().size() + " symbols is too large for bit-parallel simulation");
+		}
+		Set<Character> ordAbc = nfa.getABC();
+		abc = new char[ordAbc.size()];
+		int max = -1;
+		int k = 0;
+		for (char c : ordAbc) {
+			abc[k++] = c;
+			max = Math.max(max, c);
+		}
+		columns = new int[max + 1];
+		Arrays.fill(columns, -1);
+		for (int col = 0; col < k; col++) {
+			columns[abc[col]] = col;
+		}
+
+		Map<NFAState, Integer> ids = new HashMap<NFAState, Integer>();
+		for (NFAState s : nfa.getStates()) {
+			ids.put(s, ids.size());
+		}
+		n = ids.size();
+		words = Math.max(1, (n + WORD - 1) / WORD);
+
+		long[][] closure = new long[n][];
+		finals = new long[words];
+		for (NFAState s : nfa.getStates()) {
+			int id = ids.get(s);
+			closure[id] = mask(nfa.eClosure(s), ids);
+			if (s.isFinal()) {
+				finals[id / WORD] |= 1L << id;
+			}
+		}
+		init = closure[ids.get(nfa.getStartState())];
+
+		rows = new long[k * n * words];
+		for (NFAState s : nfa.getStates()) {
+			int id = ids.get(s);
+			for (int col = 0; col < k; col++) {
+				int base = (col * n + id) * words;
+				for (NFAState t : nfa.getToState(s, abc[col])) {
+					long[] c = closure[ids.get(t)];
+					for (int w = 0; w < words; w++) {
+						rows[base + w] |= c[w];
+					}
+				}
+			}
+		}
+
+		if (words == 1) {
+			chunks = Math.max(1, (n + 7) / 8);
+			byteTable = new long[k * chunks << 8];
+			for (int col = 0; col < k; col++) {
+				for (int chunk = 0; chunk < chunks; chunk++) {
+					int base = (col * chunks + chunk) << 8;
+					for (int b = 1; b < 256; b++) {
+						// reuse the entry for b without its lowest bit
+						int state = chunk * 8 + Integer.numberOfTrailingZeros(b);
+						long row = state < n ? rows[col * n + state] : 0;
+						byteTable[base + b] = byteTable[base + (b & (b - 1))] | row;
+					}
+				}
+			}
+			rows = null;
+		}
+	}
+
+	private long[] mask(Set<NFAState> states, Map<NFAState, Integer> ids) {
+		long[] ret = new long[words];
+		for (NFAState s : states) {
+			int id = ids.get(s);
+			ret[id / WORD] |= 1L << id;
+		}
+		return ret;
+	}
+
+	/**
+	 * Accessor for the representation in use
+	 * @return true if the state set fits in a single word
+	 */
+	public boolean isSingleWord() {
+		return words == 1;
+	}
+
+	/**
+	 * Simulates the NFA on input s to determine whether it accepts s.
+	 * As in <code>DFA.accepts</code> the string "e" stands for the
+	 * empty string.
+	 * @param s the input string
+	 * @return true if s is in the language of the NFA and false otherwise
+	 */
+	public boolean accepts(String s) {
+		if (s.length() == 1 && s.charAt(0) == 'e') {
+			s = "";
+		}
+		return words == 1 ? acceptsSingle(s) : acceptsMulti(s);
+	}
+
+	private boolean acceptsSingle(String s) {
+		long cur = init[0];
+		for (int i = 0; i < s.length(); i++) {
+			int col = column(s.charAt(i));
+			if (col < 0) {
+				return false;
+			}
+			int base = col * chunks << 8;
+			long next = 0;
+			for (int chunk = 0; chunk < chunks; chunk++) {
+				next |= byteTable[base + (chunk << 8) + (int) ((cur >>> (chunk * 8)) & 0xFF)];
+			}
+			if (next == 0) {
+				return false;
+			}
+			cur = next;
+		}
+		return (cur & finals[0]) != 0;
+	}
+
+	private boolean acceptsMulti(String s) {
+		long[] cur = init.clone();
+		long[] next = new long[words];
+		for (int i = 0; i < s.length(); i++) {
+			int col = column(s.charAt(i));
+			if (col < 0) {
+				return false;
+			}
+			Arrays.fill(next, 0);
+			long any = 0;
+			for (int w = 0; w < words; w++) {
+				for (long bits = cur[w]; bits != 0; bits &= bits - 1) {
+					int state = w * WORD + Long.numberOfTrailingZeros(bits);
+					int base = (col * n + state) * words;
+					for (int v = 0; v < words; v++) {
+						next[v] |= rows[base + v];
+					}
+				}
+			}
+			for (int w = 0; w < words; w++) {
+				any |= next[w];
+			}
+			if (any == 0) {
+				return false;
+			}
+			long[] tmp = cur;
+			cur = next;
+			next = tmp;
+		}
+		for (int w = 0; w < words; w++) {
+			if ((cur[w] & finals[w]) != 0) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	private int column(char c) {
+		return c < columns.length ? columns[c] : -1;
+	}
+}
@@ -0,0 +1,141 @@
+package fa.nfa;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+
+import fa.dfa.DFATable;
+
+/**
+ * Matches an input against many NFAs at once. The NFAs are joined
+ * under a new start state with e transitions to each of their start
+ * states, and the union is determinized with the same subset
+ * construction as <code>NFA.getDFA()</code>. Each DFA state is tagged
+ * with the ids of the patterns whose final states it contains, so one
+ * scan of the input gives every matching pattern.
+ * @author geoffreymeier
+ * @author parkererway
+ *
+ */
+public class MultiPatternMatcher {
+	/**
+	 * Returned when no pattern matches
+	 */
+	private static final int[] NONE = new int[0];
+
+	/**
+	 * Determinized union of all patterns
+	 */
+	private DFATable table;
+
+	/**
+	 * Pattern ids accepted in each DFA state, in ascending order
+	 */
+	private int[][] tags;
+
+	/**
+	 * Build a matcher for the given patterns. The id of a pattern
+	 * is its index in the list.
+	 * @param patterns the NFAs to match against
+	 */
+	public MultiPatternMatcher(List<NFA> patterns) {
+		NFAState start = new NFAState("start");
+		// a state may be shared by several patterns, e.g. the same NFA
+		// passed twice, so each final state maps to all of its owners
+		Map<NFAState, List<Integer>> owner = new HashMap<NFAState, List<Integer>>();
+		Set<Character> ordAbc = new LinkedHashSet<Character>();
+		for (int id = 0; id < patterns.size(); id++) {
+			NFA nfa = patterns.get(id);
+			start.addTransition('e', nfa.getStartState());
+			for (NFAState f : nfa.getFinalStates()) {
+				if (!owner.containsKey(f)) {
+					owner.put(f, new ArrayList<Integer>());
+				}
+				owner.get(f).add(id);
+			}
+			ordAbc.addAll(nfa.getABC());
+		}
+		char[] abc = new char[ordAbc.size()];
+		int k = 0;
+		for (char c : ordAbc) {
+			abc[k++] = c;
+		}
+
+		// subsets are numbered in BFS order, so the queue is just an index
+		Map<Set<NFAState>, Integer> ids = new HashMap<Set<NFAState>, Integer>();
+		List<Set<NFAState>> subsets = new ArrayList<Set<NFAState>>();
+		Set<NFAState> first = NFA.eClosure(start.getTo('e'));
+		ids.put(first, 0);
+		subsets.add(first);
+		int[] delta = new int[16 * Math.max(k, 1)];
+
+		for (int cur = 0; cur < subsets.size(); cur++) {
+			Set<NFAState> s = subsets.get(cur);
+			if ((cur + 1) * k > delta.length) {
+				delta = Arrays.copyOf(delta, delta.length * 2);
+			}
+			for (int col = 0; col < k; col++) {
+				Set<NFAState> toState = NFA.eClosure(NFA.getToState(s, abc[col]));
+				int to = -1;
+				if (!toState.isEmpty()) {
+					Integer id = ids.get(toState);
+					if (id == null) {
+						id = subsets.size();
+						ids.put(toState, id);
+						subsets.add(toState);
+					}
+					to = id;
+				}
+				delta[cur * k + col] = to;
+			}
+		}
+
+		int n = subsets.size();
+		boolean[] finals = new boolean[n];
+		tags = new int[n][];
+		for (int i = 0; i < n; i++) {
+			TreeSet<Integer> matched = new TreeSet<Integer>();
+			for (NFAState state : subsets.get(i)) {
+				List<Integer> owners = owner.get(state);
+				if (owners != null) {
+					matched.addAll(owners);
+				}
+			}
+			tags[i] = NONE;
+			if (!matched.isEmpty()) {
+				tags[i] = new int[matched.size()];
+				int j = 0;
+				for (int id : matched) {
+					tags[i][j++] = id;
+				}
+				finals[i] = true;
+			}
+		}
+		table = new DFATable(abc, Arrays.copyOf(delta, n * k), finals, 0);
+	}
+
+	/**
+	 * Find every pattern that accepts the input. As in
+	 * <code>DFA.accepts</code> the string "e" stands for the empty string.
+	 * @param input the input string
+	 * @return ids of the matching patterns in ascending order; the
+	 * 		   array is shared and must not be modified
+	 */
+	public int[] match(String input) {
+		int state = table.run(input);
+		return state < 0 ? NONE : tags[state];
+	}
+
+	/**
+	 * Getter for the number of DFA states built
+	 * @return number of states in the combined automaton
+	 */
+	public int getStateCount() {
+		return table.getStateCount();
+	}
+}
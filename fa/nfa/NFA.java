@@ -1,8 +1,13 @@
 package fa.nfa;
 
+import java.util.ArrayList;
+import java.util.Collections;
 import java.util.LinkedHashSet;
+import java.util.List;
 import java.util.Set;
+import java.util.HashMap;
 import java.util.HashSet;
+import java.util.Map;
 import java.util.Queue;
 import java.util.LinkedList;
 
@@ -22,6 +27,11 @@ public class NFA implements NFAInterface {
 	 */
 	private Set<NFAState> states;
 
+	/**
+	 * States indexed by name, so that lookups do not scan every state
+	 */
+	private Map<String, NFAState> byName;
+
 	/**
 	 * Initial state
 	 */
@@ -37,6 +47,7 @@ public class NFA implements NFAInterface {
 	 */
 	public NFA() {
 		states = new LinkedHashSet<NFAState>();
+		byName = new HashMap<String, NFAState>();
 		ordAbc = new LinkedHashSet<Character>();
 	}
 
@@ -92,6 +103,25 @@ public class NFA implements NFAInterface {
 	 */
 	private void addState(NFAState s) {
 		states.add(s);
+		byName.put(s.getName(), s);
+	}
+
+	/**
+	 * Mark an existing state as the start state, keeping its type
+	 * @param name the state name
+	 */
+	void setStartState(String name) {
+		start = checkIfExists(name);
+	}
+
+	/**
+	 * Add a symbol to the alphabet even if no transition uses it
+	 * @param onSymb alphabet character, e is ignored
+	 */
+	void addSymbol(char onSymb) {
+		if (onSymb != 'e') {
+			ordAbc.add(onSymb);
+		}
 	}
 
 	/**
@@ -124,15 +154,8 @@ public class NFA implements NFAInterface {
 	 * @param name
 	 * @return null if no state exist, or NFAState object otherwise.
 	 */
-	private NFAState checkIfExists(String name) {
-		NFAState ret = null;
-		for (NFAState s : states) {
-			if (s.getName().equals(name)) {
-				ret = s;
-				break;
-			}
-		}
-		return ret;
+	NFAState checkIfExists(String name) {
+		return byName.get(name);
 	}
 
 	/**
@@ -179,7 +202,13 @@ public class NFA implements NFAInterface {
 		return from.getTo(onSymb);
 	}
 
-	private Set<NFAState> getToState(Set<NFAState> from, char onSymb) {
+	/**
+	 * Get states transitioned to from any of the given states on `onSymb`
+	 * @param from current NFA states
+	 * @param onSymb the input symbol
+	 * @return Set of destination states for this symbol
+	 */
+	static Set<NFAState> getToState(Set<NFAState> from, char onSymb) {
 		Set<NFAState> ret = new HashSet<NFAState>();
 
 		for (NFAState nfaState : from) {
@@ -205,22 +234,21 @@ public class NFA implements NFAInterface {
 	@Override
 	public DFA getDFA() {
 		DFA dfa = new DFA();
-		// dfa.addStartState("foo");
-		// dfa.addFinalState("foo");
-		// dfa.addState(name);
-		Set<Set<NFAState>> addedStates = new HashSet<Set<NFAState>>();
-
-		dfa.addStartState(eClosure(start).toString());
-
-		Queue<Set<NFAState>> queue = new LinkedList<Set<NFAState>>();
-		queue.add(eClosure(start));
+		// names are fixed when a subset is first seen, so that equal
+		// subsets always map to the same DFA state
+		Map<Set<NFAState>, String> names = new HashMap<Set<NFAState>, String>();
 
-		String startStateName = eClosure(start).toString();
-		dfa.addStartState(startStateName);
-		if (isFinal(eClosure(start)))
+		Set<NFAState> startClosure = eClosure(start);
+		String startStateName = stateName(startClosure);
+		if (isFinal(startClosure))
 			dfa.addFinalState(startStateName);
+		else
+			dfa.addState(startStateName);
+		dfa.setStartState(startStateName);
 
-		addedStates.add(eClosure(start));
+		Queue<Set<NFAState>> queue = new LinkedList<Set<NFAState>>();
+		queue.add(startClosure);
+		names.put(startClosure, startStateName);
 
 		while (queue.peek() != null) {
 			Set<NFAState> s = queue.poll();
@@ -229,23 +257,40 @@ public class NFA implements NFAInterface {
 				Set<NFAState> toState = getToState(s, symb);
 				toState = eClosure(toState);
 
-				if (!addedStates.contains(toState)) {
+				String toName = names.get(toState);
+				if (toName == null) {
+					toName = stateName(toState);
 					if (isFinal(toState))
-						dfa.addFinalState(toState.toString());
+						dfa.addFinalState(toName);
 					else
-						dfa.addState(toState.toString());
+						dfa.addState(toName);
 
-					addedStates.add(toState);
+					names.put(toState, toName);
 					queue.add(toState);
 				}
 
-				dfa.addTransition(s.toString(), symb, toState.toString());
+				dfa.addTransition(names.get(s), symb, toName);
 			}
 		}
 
 		return dfa;
 	}
 
+	/**
+	 * A helper method to name the DFA state for a set of NFA states.
+	 * 
+	 * @param s   The states to name
+	 * @return The state names in sorted order, e.g. [a, b]
+	 */
+	private String stateName(Set<NFAState> s) {
+		List<String> ret = new ArrayList<String>();
+		for (NFAState nfaState : s) {
+			ret.add(nfaState.getName());
+		}
+		Collections.sort(ret);
+		return ret.toString();
+	}
+
 	/**
 	 * A helper method to determine if any of the given states are final.
 	 * 
@@ -267,11 +312,11 @@ public class NFA implements NFAInterface {
 	 * @param s   The states to perform DFS search from.
 	 * @return The results of the DFS search on all given states.
 	 */
-	private Set<NFAState> eClosure(Set<NFAState> s) {
+	static Set<NFAState> eClosure(Set<NFAState> s) {
 		Set<NFAState> ret = new HashSet<NFAState>();
 
 		for (NFAState nfaState : s) {
-			ret.addAll(eClosure(nfaState));
+			eClosureDFS(nfaState, ret);
 		}
 
 		return ret;
@@ -298,12 +343,12 @@ public class NFA implements NFAInterface {
 	 * @param ret The set of values that the results should be added to.
 	 * @return The results of the DFS search added to the values in ret.
 	 */
-	private Set<NFAState> eClosureDFS(NFAState s, Set<NFAState> ret) {
+	private static Set<NFAState> eClosureDFS(NFAState s, Set<NFAState> ret) {
 		if (!ret.contains(s)) {
 			ret.add(s);
 
 			// perform Depth-First Search
-			Set<NFAState> states = getToState(s, 'e');
+			Set<NFAState> states = s.getTo('e');
 			for (NFAState state : states) {
 				eClosureDFS(state, ret);
 			}
@@ -26,36 +26,13 @@ public class NFADriver {
 		String fileName = args[0];
 		File file = new File(fileName);
 		if(file.exists()){
-			//create a DFA instance -- you need to write DFA.java that
-			//implements DFAInterface.java
-			NFA nfa = new NFA();
 			Scanner scan = new Scanner(file);
-			//the first line is the set of final states
-			//get the string of the final states and split it on a space
-			String finalStates = scan.nextLine().trim();
-			//using tokenizer to split the string
-			StringTokenizer tk = new StringTokenizer(finalStates, " ");
-			while(tk.hasMoreTokens()){
-				nfa.addFinalState(tk.nextToken());
-			}
-			
-			//the second line is the start state
-			String startStateName = scan.nextLine().trim();
-			nfa.addStartState(startStateName);
-
-			//get the string of other states and split in on space too
-			String otherStates = scan.nextLine().trim();
-			tk = new StringTokenizer(otherStates, " ");
-			while(tk.hasMoreTokens()){
-				nfa.addState(tk.nextToken());
-			}
-
-			//read in the transactions
-			String trans = scan.nextLine();
-			tk = new StringTokenizer(trans, " ");
-			while(tk.hasMoreTokens()){
-				char[] tran = tk.nextToken().toCharArray();
-				nfa.addTransition(String.valueOf(tran[0]), tran[1], String.valueOf(tran[2]));
+			NFA nfa = null;
+			try {
+				nfa = readNFA(scan);
+			} catch (IllegalArgumentException e) {
+				System.err.println("ERROR: " + e.getMessage());
+				System.exit(2);
 			}
 			DFA dfa = nfa.getDFA();
 			//print out dfa in the specified format.
@@ -72,4 +49,65 @@ public class NFADriver {
 		}
 	}
 
+	/**
+	 * Reads the NFA encoding from the first four lines of the input:
+	 * final states, start state, other states and transitions.
+	 * @param scan the input, positioned at the first line
+	 * @return the NFA described by the input
+	 * @throws IllegalArgumentException if a line is missing, a
+	 * 		   transition is malformed or names an unknown state
+	 */
+	static NFA readNFA(Scanner scan) {
+		//create an NFA instance
+		NFA nfa = new NFA();
+		//the first line is the set of final states
+		//get the string of the final states and split it on a space
+		String finalStates = nextLine(scan, "final states").trim();
+		//using tokenizer to split the string
+		StringTokenizer tk = new StringTokenizer(finalStates, " ");
+		while(tk.hasMoreTokens()){
+			nfa.addFinalState(tk.nextToken());
+		}
+
+		//the second line is the start state
+		String startStateName = nextLine(scan, "start state").trim();
+		if(startStateName.isEmpty()){
+			throw new IllegalArgumentException("missing start state");
+		}
+		nfa.addStartState(startStateName);
+
+		//get the string of other states and split in on space too
+		String otherStates = nextLine(scan, "states").trim();
+		tk = new StringTokenizer(otherStates, " ");
+		while(tk.hasMoreTokens()){
+			nfa.addState(tk.nextToken());
+		}
+
+		//read in the transactions
+		String trans = nextLine(scan, "transitions");
+		tk = new StringTokenizer(trans, " ");
+		while(tk.hasMoreTokens()){
+			String token = tk.nextToken();
+			char[] tran = token.toCharArray();
+			if(tran.length != 3){
+				throw new IllegalArgumentException("bad transition " + token);
+			}
+			//check the states here, addTransition exits on an unknown state
+			for(int i = 0; i < 3; i += 2){
+				if(nfa.checkIfExists(String.valueOf(tran[i])) == null){
+					throw new IllegalArgumentException("No NFA state exists with name " + tran[i]);
+				}
+			}
+			nfa.addTransition(String.valueOf(tran[0]), tran[1], String.valueOf(tran[2]));
+		}
+		return nfa;
+	}
+
+	private static String nextLine(Scanner scan, String what) {
+		if(!scan.hasNextLine()){
+			throw new IllegalArgumentException("missing line of " + what);
+		}
+		return scan.nextLine();
+	}
+
 }
@@ -0,0 +1,754 @@
+package fa.nfa;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+
+/**
+ * Simplification pass to run on an NFA before subset construction.
+ * The pass
+ * <ol>
+ * <li>removes states that are unreachable from the start state or
+ * cannot reach a final state,</li>
+ * <li>merges states that lie on a common cycle of e transitions,</li>
+ * <li>removes the remaining e transitions by saturating the
+ * transition relation, and</li>
+ * <li>merges bisimilar states.</li>
+ * </ol>
+ * The result accepts the same language and keeps the alphabet of the
+ * original NFA. Every state keeps the name of one of the original
+ * states it stands for.
+ * @author geoffreymeier
+ * @author parkererway
+ *
+ */
+public class NFAOptimizer {
+
+	/**
+	 * Integer form of an NFA used between the passes
+	 */
+	private static class Graph {
+		/**
+		 * Number of states and the start state
+		 */
+		int n, start;
+
+		/**
+		 * Name kept for each state
+		 */
+		String[] names;
+
+		/**
+		 * Final state flags
+		 */
+		boolean[] finals;
+
+		/**
+		 * e transitions, eps[state]
+		 */
+		int[][] eps;
+
+		/**
+		 * Symbol transitions, delta[state][column]
+		 */
+		int[][][] delta;
+
+		Graph(int n, int k) {
+			this.n = n;
+			names = new String[n];
+			finals = new boolean[n];
+			eps = new int[n][];
+			delta = new int[n][k][];
+		}
+	}
+
+	/**
+	 * Partition of the states 0..n-1 into blocks, grouped into compound
+	 * blocks, for the bisimulation pass. Each block is a range of one
+	 * permutation array, so marking and splitting cost O(1) per state.
+	 */
+	private static class Partition {
+		/**
+		 * States ordered by block, and the position of each state
+		 */
+		int[] elems, loc;
+
+		/**
+		 * Block of each state; range and number of marked states of
+		 * each block, which are kept at the front of the range
+		 */
+		int[] block, first, end, marked;
+		int numBlocks;
+
+		/**
+		 * Blocks with marked states, waiting for split()
+		 */
+		int[] touched;
+		int numTouched;
+
+		/**
+		 * Compound block of each block, kept as doubly linked lists
+		 * of blocks, and the number of blocks in each compound
+		 */
+		int[] compound, head, next, prev, size;
+		int numCompounds;
+
+		/**
+		 * Compound blocks with at least two blocks
+		 */
+		int[] work;
+		int numWork;
+
+		Partition(int n) {
+			elems = new int[n];
+			loc = new int[n];
+			block = new int[n];
+			first = new int[n];
+			end = new int[n];
+			marked = new int[n];
+			touched = new int[n];
+			compound = new int[n];
+			head = new int[n];
+			next = new int[n];
+			prev = new int[n];
+			size = new int[n];
+			work = new int[n];
+			for (int s = 0; s < n; s++) {
+				elems[s] = s;
+				loc[s] = s;
+			}
+			end[0] = n;
+			numBlocks = 1;
+			next[0] = prev[0] = -1;
+			size[0] = 1;
+			numCompounds = 1;
+		}
+
+		int blockOf(int s) {
+			return block[s];
+		}
+
+		/**
+		 * Split every block into its flagged and other states
+		 */
+		void mark(boolean[] flags) {
+			for (int s = 0; s < flags.length; s++) {
+				if (flags[s]) {
+					markState(s);
+				}
+			}
+			split();
+		}
+
+		void markState(int s) {
+			int b = block[s];
+			int pos = first[b] + marked[b];
+			if (loc[s] < pos) {
+				return;
+			}
+			if (marked[b] == 0) {
+				touched[numTouched++] = b;
+			}
+			int q = elems[pos];
+			elems[loc[s]] = q;
+			loc[q] = loc[s];
+			elems[pos] = s;
+			loc[s] = pos;
+			marked[b]++;
+		}
+
+		/**
+		 * Split the blocks with marked states, the new block taking the
+		 * smaller part, and clear the marks
+		 */
+		void split() {
+			for (int i = 0; i < numTouched; i++) {
+				int x = touched[i];
+				int m = marked[x];
+				marked[x] = 0;
+				if (m == end[x] - first[x]) {
+					continue;
+				}
+				int y = numBlocks++;
+				if (m <= end[x] - first[x] - m) {
+					first[y] = first[x];
+					end[y] = first[x] + m;
+					first[x] += m;
+				} else {
+					first[y] = first[x] + m;
+					end[y] = end[x];
+					end[x] = first[x] + m;
+				}
+				for (int j = first[y]; j < end[y]; j++) {
+					block[elems[j]] = y;
+				}
+				int c = compound[x];
+				compound[y] = c;
+				next[y] = next[x];
+				prev[y] = x;
+				if (next[x] >= 0) {
+					prev[next[x]] = y;
+				}
+				next[x] = y;
+				if (++size[c] == 2) {
+					work[numWork++] = c;
+				}
+			}
+			numTouched = 0;
+		}
+
+		boolean hasCompoundWork() {
+			return numWork > 0;
+		}
+
+		/**
+		 * Move a block of at most half the size of a compound block
+		 * with several blocks into a compound block of its own
+		 * @param out receives the states of the block
+		 * @return the number of states in the block
+		 */
+		int takeSmallBlock(int[] out) {
+			int c = work[numWork - 1];
+			int b1 = head[c];
+			int b2 = next[b1];
+			int b = end[b1] - first[b1] <= end[b2] - first[b2] ? b1 : b2;
+			if (prev[b] >= 0) {
+				next[prev[b]] = next[b];
+			} else {
+				head[c] = next[b];
+			}
+			if (next[b] >= 0) {
+				prev[next[b]] = prev[b];
+			}
+			if (--size[c] < 2) {
+				numWork--;
+			}
+			int d = numCompounds++;
+			compound[b] = d;
+			head[d] = b;
+			next[b] = prev[b] = -1;
+			size[d] = 1;
+			System.arraycopy(elems, first[b], out, 0, end[b] - first[b]);
+			return end[b] - first[b];
+		}
+	}
+
+	/**
+	 * Build a simplified NFA for the same language
+	 * @param nfa the NFA to simplify, left unchanged
+	 * @return the simplified NFA
+	 */
+	public static NFA optimize(NFA nfa) {
+		char[] abc = new char[nfa.getABC().size()];
+		int k = 0;
+		for (char c : nfa.getABC()) {
+			abc[k++] = c;
+		}
+
+		Graph g = read(nfa, abc);
+		g = restrict(g, useful(g));
+		g = collapseEpsilonCycles(g);
+		g = removeEpsilon(g);
+		g = restrict(g, useful(g));
+		g = mergeBisimilar(g);
+		return write(g, abc);
+	}
+
+	private static Graph read(NFA nfa, char[] abc) {
+		Map<NFAState, Integer> ids = new HashMap<NFAState, Integer>();
+		for (NFAState s : nfa.getStates()) {
+			ids.put(s, ids.size());
+		}
+		Graph g = new Graph(ids.size(), abc.length);
+		for (NFAState s : nfa.getStates()) {
+			int id = ids.get(s);
+			g.names[id] = s.getName();
+			g.finals[id] = s.isFinal();
+			g.eps[id] = toIds(s.getTo('e'), ids);
+			for (int col = 0; col < abc.length; col++) {
+				g.delta[id][col] = toIds(s.getTo(abc[col]), ids);
+			}
+		}
+		g.start = ids.get(nfa.getStartState());
+		return g;
+	}
+
+	private static int[] toIds(Set<NFAState> states, Map<NFAState, Integer> ids) {
+		int[] ret = new int[states.size()];
+		int i = 0;
+		for (NFAState s : states) {
+			ret[i++] = ids.get(s);
+		}
+		Arrays.sort(ret);
+		return ret;
+	}
+
+	private static NFA write(Graph g, char[] abc) {
+		NFA nfa = new NFA();
+		for (int s = 0; s < g.n; s++) {
+			if (g.finals[s]) {
+				nfa.addFinalState(g.names[s]);
+			} else {
+				nfa.addState(g.names[s]);
+			}
+		}
+		nfa.setStartState(g.names[g.start]);
+		for (char c : abc) {
+			nfa.addSymbol(c);
+		}
+		for (int s = 0; s < g.n; s++) {
+			for (int t : g.eps[s]) {
+				nfa.addTransition(g.names[s], 'e', g.names[t]);
+			}
+			for (int col = 0; col < abc.length; col++) {
+				for (int t : g.delta[s][col]) {
+					nfa.addTransition(g.names[s], abc[col], g.names[t]);
+				}
+			}
+		}
+		return nfa;
+	}
+
+	/**
+	 * Find the states that are reachable from the start state and
+	 * can reach a final state. The start state is always kept.
+	 */
+	private static boolean[] useful(Graph g) {
+		List<List<Integer>> back = new ArrayList<List<Integer>>();
+		for (int s = 0; s < g.n; s++) {
+			back.add(new ArrayList<Integer>());
+		}
+		for (int s = 0; s < g.n; s++) {
+			for (int t : g.eps[s]) {
+				back.get(t).add(s);
+			}
+			for (int[] targets : g.delta[s]) {
+				for (int t : targets) {
+					back.get(t).add(s);
+				}
+			}
+		}
+
+		boolean[] reach = new boolean[g.n];
+		Deque<Integer> stack = new ArrayDeque<Integer>();
+		reach[g.start] = true;
+		stack.push(g.start);
+		while (!stack.isEmpty()) {
+			int s = stack.pop();
+			for (int t : g.eps[s]) {
+				if (!reach[t]) {
+					reach[t] = true;
+					stack.push(t);
+				}
+			}
+			for (int[] targets : g.delta[s]) {
+				for (int t : targets) {
+					if (!reach[t]) {
+						reach[t] = true;
+						stack.push(t);
+					}
+				}
+			}
+		}
+
+		boolean[] coreach = new boolean[g.n];
+		for (int s = 0; s < g.n; s++) {
+			if (g.finals[s]) {
+				coreach[s] = true;
+				stack.push(s);
+			}
+		}
+		while (!stack.isEmpty()) {
+			int s = stack.pop();
+			for (int t : back.get(s)) {
+				if (!coreach[t]) {
+					coreach[t] = true;
+					stack.push(t);
+				}
+			}
+		}
+
+		boolean[] keep = new boolean[g.n];
+		for (int s = 0; s < g.n; s++) {
+			keep[s] = reach[s] && coreach[s];
+		}
+		keep[g.start] = true;
+		return keep;
+	}
+
+	private static Graph restrict(Graph g, boolean[] keep) {
+		int[] newId = new int[g.n];
+		int m = 0;
+		for (int s = 0; s < g.n; s++) {
+			newId[s] = keep[s] ? m++ : -1;
+		}
+		Graph ret = new Graph(m, g.delta.length == 0 ? 0 : g.delta[0].length);
+		for (int s = 0; s < g.n; s++) {
+			if (keep[s]) {
+				int id = newId[s];
+				ret.names[id] = g.names[s];
+				ret.finals[id] = g.finals[s];
+				ret.eps[id] = renumber(g.eps[s], newId);
+				for (int col = 0; col < ret.delta[id].length; col++) {
+					ret.delta[id][col] = renumber(g.delta[s][col], newId);
+				}
+			}
+		}
+		ret.start = newId[g.start];
+		return ret;
+	}
+
+	/**
+	 * Map targets through newId, dropping the ones mapped to -1 and
+	 * duplicates
+	 */
+	private static int[] renumber(int[] targets, int[] newId) {
+		TreeSet<Integer> set = new TreeSet<Integer>();
+		for (int t : targets) {
+			if (newId[t] >= 0) {
+				set.add(newId[t]);
+			}
+		}
+		int[] ret = new int[set.size()];
+		int i = 0;
+		for (int t : set) {
+			ret[i++] = t;
+		}
+		return ret;
+	}
+
+	/**
+	 * Merge the strongly connected components of the e graph using
+	 * Tarjan's algorithm. Components are numbered in the order they are
+	 * completed, so every e transition of the result goes from a
+	 * higher number to a lower one.
+	 */
+	private static Graph collapseEpsilonCycles(Graph g) {
+		int[] comp = new int[g.n];
+		int[] index = new int[g.n];
+		int[] low = new int[g.n];
+		boolean[] onStack = new boolean[g.n];
+		Arrays.fill(index, -1);
+		Deque<Integer> sccStack = new ArrayDeque<Integer>();
+		int[] edge = new int[g.n];
+		Deque<Integer> callStack = new ArrayDeque<Integer>();
+		int counter = 0;
+		int m = 0;
+
+		// iterative version, NFAs built from large files are too deep
+		// for recursion
+		for (int root = 0; root < g.n; root++) {
+			if (index[root] >= 0) {
+				continue;
+			}
+			callStack.push(root);
+			while (!callStack.isEmpty()) {
+				int v = callStack.peek();
+				if (index[v] < 0) {
+					index[v] = low[v] = counter++;
+					sccStack.push(v);
+					onStack[v] = true;
+				}
+				if (edge[v] < g.eps[v].length) {
+					int w = g.eps[v][edge[v]++];
+					if (index[w] < 0) {
+						callStack.push(w);
+					} else if (onStack[w]) {
+						low[v] = Math.min(low[v], index[w]);
+					}
+					continue;
+				}
+				callStack.pop();
+				if (!callStack.isEmpty()) {
+					int parent = callStack.peek();
+					low[parent] = Math.min(low[parent], low[v]);
+				}
+				if (low[v] == index[v]) {
+					int w;
+					do {
+						w = sccStack.pop();
+						onStack[w] = false;
+						comp[w] = m;
+					} while (w != v);
+					m++;
+				}
+			}
+		}
+
+		int k = g.delta.length == 0 ? 0 : g.delta[0].length;
+		Graph ret = new Graph(m, k);
+		List<Set<Integer>> eps = new ArrayList<Set<Integer>>();
+		List<List<Set<Integer>>> delta = new ArrayList<List<Set<Integer>>>();
+		for (int c = 0; c < m; c++) {
+			eps.add(new TreeSet<Integer>());
+			List<Set<Integer>> row = new ArrayList<Set<Integer>>();
+			for (int col = 0; col < k; col++) {
+				row.add(new TreeSet<Integer>());
+			}
+			delta.add(row);
+		}
+		for (int s = 0; s < g.n; s++) {
+			int c = comp[s];
+			if (ret.names[c] == null) {
+				ret.names[c] = g.names[s];
+			}
+			ret.finals[c] |= g.finals[s];
+			for (int t : g.eps[s]) {
+				if (comp[t] != c) {
+					eps.get(c).add(comp[t]);
+				}
+			}
+			for (int col = 0; col < k; col++) {
+				for (int t : g.delta[s][col]) {
+					delta.get(c).get(col).add(comp[t]);
+				}
+			}
+		}
+		for (int c = 0; c < m; c++) {
+			ret.eps[c] = toArray(eps.get(c));
+			for (int col = 0; col < k; col++) {
+				ret.delta[c][col] = toArray(delta.get(c).get(col));
+			}
+		}
+		ret.start = comp[g.start];
+		return ret;
+	}
+
+	/**
+	 * Replace e transitions by saturating the transition relation:
+	 * a state gets every symbol transition of its e closure, and is
+	 * final if its closure contains a final state. Expects every e
+	 * transition to go to a lower numbered state, so states are done
+	 * in increasing order and each one only unions the saturated rows
+	 * of its direct e successors instead of keeping its whole closure.
+	 */
+	private static Graph removeEpsilon(Graph g) {
+		int k = g.delta.length == 0 ? 0 : g.delta[0].length;
+		Graph ret = new Graph(g.n, k);
+		int[] seen = new int[g.n];
+		int[] buffer = new int[16];
+		int stamp = 0;
+		for (int s = 0; s < g.n; s++) {
+			ret.names[s] = g.names[s];
+			ret.eps[s] = new int[0];
+			ret.finals[s] = g.finals[s];
+			for (int t : g.eps[s]) {
+				ret.finals[s] |= ret.finals[t];
+			}
+			for (int col = 0; col < k; col++) {
+				stamp++;
+				int size = 0;
+				for (int e = -1; e < g.eps[s].length; e++) {
+					int[] row = e < 0 ? g.delta[s][col] : ret.delta[g.eps[s][e]][col];
+					for (int u : row) {
+						if (seen[u] != stamp) {
+							seen[u] = stamp;
+							if (size == buffer.length) {
+								buffer = Arrays.copyOf(buffer, size * 2);
+							}
+							buffer[size++] = u;
+						}
+					}
+				}
+				int[] row = Arrays.copyOf(buffer, size);
+				Arrays.sort(row);
+				ret.delta[s][col] = row;
+			}
+		}
+		ret.start = g.start;
+		return ret;
+	}
+
+	/**
+	 * Merge states that are bisimilar: same type, and for every
+	 * symbol their successors fall into the same blocks. Expects a
+	 * graph without e transitions.
+	 * <p>
+	 * This is the relational coarsest partition algorithm of Paige and
+	 * Tarjan, with one count per state, symbol and compound block so
+	 * that splitting a compound block only looks at the edges into its
+	 * smaller half. It takes O(m log n) time for m transitions.
+	 */
+	private static Graph mergeBisimilar(Graph g) {
+		int n = g.n;
+		int k = g.delta.length == 0 ? 0 : g.delta[0].length;
+
+		// incoming edges of t on column col are the positions
+		// inStart[col * n + t] .. inStart[col * n + t + 1] of from[]
+		int[] inStart = new int[k * n + 1];
+		for (int s = 0; s < n; s++) {
+			for (int col = 0; col < k; col++) {
+				for (int t : g.delta[s][col]) {
+					inStart[col * n + t + 1]++;
+				}
+			}
+		}
+		for (int i = 0; i < k * n; i++) {
+			inStart[i + 1] += inStart[i];
+		}
+		int m = inStart[k * n];
+		int[] from = new int[m];
+		int[] fill = Arrays.copyOf(inStart, k * n);
+		for (int s = 0; s < n; s++) {
+			for (int col = 0; col < k; col++) {
+				for (int t : g.delta[s][col]) {
+					from[fill[col * n + t]++] = s;
+				}
+			}
+		}
+
+		// counts[rec[e]] is the number of transitions from the source of
+		// e, on its symbol, into the compound block holding its target
+		int[] rec = new int[m];
+		int[] counts = new int[Math.max(16, m)];
+		int numCounts = 0;
+		int[] first = new int[n * Math.max(k, 1)];
+		Arrays.fill(first, -1);
+		for (int col = 0; col < k; col++) {
+			for (int e = inStart[col * n]; e < inStart[(col + 1) * n]; e++) {
+				int key = from[e] * k + col;
+				if (first[key] < 0) {
+					first[key] = numCounts++;
+				}
+				rec[e] = first[key];
+				counts[rec[e]]++;
+			}
+		}
+
+		Partition p = new Partition(n);
+		p.mark(g.finals);
+		boolean[] hasSuccessor = new boolean[n];
+		for (int col = 0; col < k; col++) {
+			for (int s = 0; s < n; s++) {
+				hasSuccessor[s] = g.delta[s][col].length > 0;
+			}
+			p.mark(hasSuccessor);
+		}
+
+		int[] splitter = new int[n];
+		int[] hits = new int[n];
+		int[] touched = new int[n];
+		int[] newCount = new int[n];
+		while (p.hasCompoundWork()) {
+			int size = p.takeSmallBlock(splitter);
+			for (int col = 0; col < k; col++) {
+				// count the transitions into the small block
+				int numTouched = 0;
+				for (int i = 0; i < size; i++) {
+					int t = splitter[i];
+					for (int e = inStart[col * n + t]; e < inStart[col * n + t + 1]; e++) {
+						int s = from[e];
+						if (hits[s] == 0) {
+							touched[numTouched++] = s;
+						}
+						hits[s]++;
+					}
+				}
+				if (numTouched == 0) {
+					continue;
+				}
+				// split by "has a transition into the small block"
+				for (int i = 0; i < numTouched; i++) {
+					p.markState(touched[i]);
+				}
+				p.split();
+				// split by "has no transition into the rest of the compound"
+				for (int i = 0; i < size; i++) {
+					int t = splitter[i];
+					for (int e = inStart[col * n + t]; e < inStart[col * n + t + 1]; e++) {
+						int s = from[e];
+						if (hits[s] > 0 && hits[s] == counts[rec[e]]) {
+							p.markState(s);
+						}
+					}
+				}
+				p.split();
+				// the small block is a compound block of its own now
+				for (int i = 0; i < numTouched; i++) {
+					int s = touched[i];
+					if (numCounts == counts.length) {
+						counts = Arrays.copyOf(counts, numCounts * 2);
+					}
+					newCount[s] = numCounts;
+					counts[numCounts++] = hits[s];
+				}
+				for (int i = 0; i < size; i++) {
+					int t = splitter[i];
+					for (int e = inStart[col * n + t]; e < inStart[col * n + t + 1]; e++) {
+						int s = from[e];
+						counts[rec[e]]--;
+						rec[e] = newCount[s];
+					}
+				}
+				for (int i = 0; i < numTouched; i++) {
+					hits[touched[i]] = 0;
+				}
+			}
+		}
+
+		// number the blocks by their lowest state, which is kept
+		int[] block = new int[n];
+		int[] id = new int[n];
+		Arrays.fill(id, -1);
+		int count = 0;
+		for (int s = 0; s < n; s++) {
+			int b = p.blockOf(s);
+			if (id[b] < 0) {
+				id[b] = count++;
+			}
+			block[s] = id[b];
+		}
+		int[] rep = new int[count];
+		Arrays.fill(rep, -1);
+		for (int s = 0; s < n; s++) {
+			if (rep[block[s]] < 0) {
+				rep[block[s]] = s;
+			}
+		}
+		Graph ret = new Graph(count, k);
+		for (int b = 0; b < count; b++) {
+			int s = rep[b];
+			ret.names[b] = g.names[s];
+			ret.finals[b] = g.finals[s];
+			ret.eps[b] = new int[0];
+			for (int col = 0; col < k; col++) {
+				ret.delta[b][col] = blocksOf(g.delta[s][col], block);
+			}
+		}
+		ret.start = block[g.start];
+		return ret;
+	}
+
+	/**
+	 * Sorted blocks of the targets, without duplicates
+	 */
+	private static int[] blocksOf(int[] targets, int[] block) {
+		int[] ret = new int[targets.length];
+		for (int i = 0; i < targets.length; i++) {
+			ret[i] = block[targets[i]];
+		}
+		Arrays.sort(ret);
+		int size = 0;
+		for (int i = 0; i < ret.length; i++) {
+			if (size == 0 || ret[size - 1] != ret[i]) {
+				ret[size++] = ret[i];
+			}
+		}
+		return Arrays.copyOf(ret, size);
+	}
+
+	private static int[] toArray(Set<Integer> set) {
+		int[] ret = new int[set.size()];
+		int i = 0;
+		for (int t : set) {
+			ret[i++] = t;
+		}
+		return ret;
+	}
+}
@@ -0,0 +1,330 @@
+package fa.nfa;
+
+import java.io.BufferedReader;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.PrintStream;
+import java.io.PrintWriter;
+import java.net.StandardProtocolFamily;
+import java.net.UnixDomainSocketAddress;
+import java.nio.channels.Channels;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Scanner;
+import java.util.TreeSet;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import fa.dfa.BatchMatcher;
+import fa.dfa.CompiledDFA;
+import fa.dfa.DFATable;
+import fa.dfa.OffHeapDFATable;
+
+/**
+ * Long running matching server. Automata are compiled once, kept in a
+ * registry under a client chosen id, and shared between ids when their
+ * source has the same fingerprint. Clients then send batches of
+ * strings to match, which avoids the JVM start up, parsing and
+ * <code>getDFA()</code> cost of running <code>NFADriver</code> per file.
+ * Large tables are kept in an <code>OffHeapDFATable</code> so they do
+ * not add to garbage collection work.
+ * <p>
+ * With no argument the server talks over stdin/stdout; with a path
+ * argument it listens on a Unix domain socket at that path and serves
+ * each connection on its own (virtual, when available) thread.
+ * <p>
+ * The protocol is line based, one command per line:
+ * <pre>
+ * LOAD id file       compile the NFA in file (NFADriver format)
+ * REGEX id pattern   compile a regular expression
+ * MATCH id n         followed by n input lines; answers n lines yes/no
+ * DROP id            remove an automaton, freeing it once no id uses it
+ * LIST               list the registered ids
+ * QUIT               end the session
+ * </pre>
+ * Commands other than MATCH answer with a single line starting with
+ * OK or ERR.
+ * @author geoffreymeier
+ * @author parkererway
+ *
+ */
+public class NFAServer {
+	/**
+	 * Tables with more transitions than this are moved off the heap
+	 */
+	private static final long OFF_HEAP_TRANSITIONS = 1 << 20;
+
+	/**
+	 * Number of MATCH inputs read and matched at a time
+	 */
+	private static final int CHUNK = 4096;
+
+	/**
+	 * Compiled automata by id
+	 */
+	private Map<String, BatchMatcher> registry = new ConcurrentHashMap<String, BatchMatcher>();
+
+	/**
+	 * Compiled automata by fingerprint of their source
+	 */
+	private Map<String, BatchMatcher> compiled = new ConcurrentHashMap<String, BatchMatcher>();
+
+	/**
+	 * Fingerprint registered under each id, and number of ids using
+	 * each fingerprint. A compiled automaton is evicted when its count
+	 * drops to zero. Guarded by this.
+	 */
+	private Map<String, String> fingerprints = new HashMap<String, String>();
+	private Map<String, Integer> references = new HashMap<String, Integer>();
+
+	/**
+	 * @param args - optional path of the Unix domain socket to listen on
+	 * @throws IOException if the socket cannot be opened
+	 */
+	public static void main(String[] args) throws IOException {
+		NFAServer server = new NFAServer();
+		if (args.length == 0) {
+			// the protocol owns stdout, warnings printed by NFA go to stderr
+			PrintStream protocol = System.out;
+			System.setOut(System.err);
+			server.serve(new BufferedReader(new InputStreamReader(System.in, StandardCharsets.UTF_8)),
+					new PrintWriter(new OutputStreamWriter(protocol, StandardCharsets.UTF_8)));
+		} else {
+			server.listen(Path.of(args[0]));
+		}
+	}
+
+	/**
+	 * Accept connections on a Unix domain socket until the process ends
+	 * @param path the socket file, replaced if it already exists
+	 * @throws IOException if the socket cannot be opened
+	 */
+	public void listen(Path path) throws IOException {
+		Files.deleteIfExists(path);
+		path.toFile().deleteOnExit();
+		ExecutorService executor = newExecutor();
+		try (ServerSocketChannel listener = ServerSocketChannel.open(StandardProtocolFamily.UNIX)) {
+			listener.bind(UnixDomainSocketAddress.of(path));
+			while (true) {
+				SocketChannel channel = listener.accept();
+				executor.execute(() -> {
+					try (SocketChannel c = channel) {
+						serve(new BufferedReader(Channels.newReader(c, StandardCharsets.UTF_8)),
+								new PrintWriter(Channels.newWriter(c, StandardCharsets.UTF_8)));
+					} catch (IOException e) {
+						System.err.println("ERROR: " + e.getMessage());
+					}
+				});
+			}
+		}
+	}
+
+	/**
+	 * Use a virtual thread per connection when the JVM supports it,
+	 * otherwise a cached pool of platform threads.
+	 */
+	private static ExecutorService newExecutor() {
+		try {
+			return (ExecutorService) Executors.class.getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+		} catch (ReflectiveOperationException e) {
+			return Executors.newCachedThreadPool();
+		}
+	}
+
+	/**
+	 * Run one session until QUIT or the end of the input
+	 * @param in the client requests
+	 * @param out the responses
+	 * @throws IOException if reading or writing fails
+	 */
+	public void serve(BufferedReader in, PrintWriter out) throws IOException {
+		String line;
+		while ((line = in.readLine()) != null) {
+			line = line.trim();
+			if (line.isEmpty()) {
+				continue;
+			}
+			String[] parts = line.split("\\s+", 3);
+			String command = parts[0].toUpperCase();
+			if (command.equals("QUIT")) {
+				out.println("OK");
+				break;
+			}
+			try {
+				switch (command) {
+				case "LOAD":
+					requireArgs(parts, 3);
+					String content = read(parts[2]);
+					out.println(register(parts[1], "nfa:" + content, () -> {
+						try (Scanner scan = new Scanner(content)) {
+							return NFADriver.readNFA(scan);
+						}
+					}));
+					break;
+				case "REGEX":
+					requireArgs(parts, 3);
+					out.println(register(parts[1], "regex:" + parts[2], () -> Regex.compile(parts[2])));
+					break;
+				case "MATCH":
+					requireArgs(parts, 3);
+					match(parts[1], Integer.parseInt(parts[2]), in, out);
+					break;
+				case "DROP":
+					requireArgs(parts, 2);
+					out.println(drop(parts[1]) ? "OK" : "ERR unknown id " + parts[1]);
+					break;
+				case "LIST":
+					out.println(("OK " + String.join(" ", new TreeSet<String>(registry.keySet()))).trim());
+					break;
+				default:
+					out.println("ERR unknown command " + parts[0]);
+				}
+			} catch (IllegalArgumentException | IOException e) {
+				out.println("ERR " + e.getMessage());
+			} catch (RuntimeException e) {
+				// a bad automaton must not end the session or the server
+				out.println("ERR " + e);
+			}
+			out.flush();
+		}
+		out.flush();
+	}
+
+	/**
+	 * Source of an NFA for the registry
+	 */
+	private interface NFASource {
+		NFA get();
+	}
+
+	/**
+	 * Register an automaton under id, compiling it only if no automaton
+	 * with the same source was compiled before
+	 */
+	private String register(String id, String source, NFASource nfa) {
+		String fingerprint = fingerprint(source);
+		BatchMatcher matcher = compiled.get(fingerprint);
+		if (matcher == null) {
+			DFATable minimal = new DFATable(NFAOptimizer.optimize(nfa.get()).getDFA()).minimize();
+			CompiledDFA table = minimal;
+			if ((long) minimal.getStateCount() * minimal.getABC().length > OFF_HEAP_TRANSITIONS) {
+				table = new OffHeapDFATable(minimal);
+			}
+			matcher = new BatchMatcher(table);
+		}
+		synchronized (this) {
+			// another session may have compiled or evicted it meanwhile
+			BatchMatcher old = compiled.putIfAbsent(fingerprint, matcher);
+			if (old != null) {
+				matcher = old;
+			}
+			references.merge(fingerprint, 1, Integer::sum);
+			String previous = fingerprints.put(id, fingerprint);
+			registry.put(id, matcher);
+			if (previous != null) {
+				release(previous);
+			}
+		}
+		return "OK " + id + " " + fingerprint;
+	}
+
+	/**
+	 * Remove an id from the registry
+	 * @return false if the id was not registered
+	 */
+	private synchronized boolean drop(String id) {
+		String fingerprint = fingerprints.remove(id);
+		if (fingerprint == null) {
+			return false;
+		}
+		registry.remove(id);
+		release(fingerprint);
+		return true;
+	}
+
+	/**
+	 * Drop one reference to a compiled automaton, evicting it when no
+	 * id uses it any more. Called with the lock held.
+	 */
+	private void release(String fingerprint) {
+		int count = references.get(fingerprint) - 1;
+		if (count == 0) {
+			references.remove(fingerprint);
+			compiled.remove(fingerprint);
+		} else {
+			references.put(fingerprint, count);
+		}
+	}
+
+	/**
+	 * Read a batch of inputs and answer yes or no for each of them.
+	 * The batch is read and matched CHUNK lines at a time, so memory
+	 * does not depend on the count sent by the client.
+	 */
+	private void match(String id, int count, BufferedReader in, PrintWriter out) throws IOException {
+		if (count < 0) {
+			throw new IllegalArgumentException("bad count " + count);
+		}
+		BatchMatcher matcher = registry.get(id);
+		String[] inputs = new String[Math.min(count, CHUNK)];
+		StringBuilder sb = new StringBuilder();
+		for (int done = 0; done < count; done += inputs.length) {
+			if (count - done < inputs.length) {
+				inputs = new String[count - done];
+			}
+			for (int i = 0; i < inputs.length; i++) {
+				inputs[i] = in.readLine();
+				if (inputs[i] == null) {
+					throw new IOException("end of input inside MATCH batch");
+				}
+			}
+			if (matcher == null) {
+				// keep consuming the batch, so the session stays in sync
+				continue;
+			}
+			sb.setLength(0);
+			for (boolean a : matcher.acceptsAll(inputs)) {
+				sb.append(a ? "yes" : "no").append('\n');
+			}
+			out.print(sb);
+		}
+		if (matcher == null) {
+			throw new IllegalArgumentException("unknown id " + id);
+		}
+	}
+
+	private static void requireArgs(String[] parts, int count) {
+		if (parts.length < count) {
+			throw new IllegalArgumentException("missing arguments for " + parts[0]);
+		}
+	}
+
+	private static String read(String fileName) throws IOException {
+		try (FileInputStream in = new FileInputStream(fileName)) {
+			return new String(in.readAllBytes(), StandardCharsets.UTF_8);
+		}
+	}
+
+	private static String fingerprint(String source) {
+		try {
+			byte[] hash = MessageDigest.getInstance("SHA-256").digest(source.getBytes(StandardCharsets.UTF_8));
+			StringBuilder sb = new StringBuilder();
+			for (int i = 0; i < 8; i++) {
+				sb.append(String.format("%02x", hash[i]));
+			}
+			return sb.toString();
+		} catch (NoSuchAlgorithmException e) {
+			throw new IllegalStateException(e);
+		}
+	}
+}
@@ -0,0 +1,266 @@
+package fa.nfa;
+
+import java.util.Arrays;
+
+/**
+ * Regular expression front end. A pattern is parsed by recursive
+ * descent and turned into an NFA with Thompson's construction, so
+ * automata no longer have to be written in the driver file format.
+ * <p>
+ * Supported syntax: concatenation, alternation <code>a|b</code>,
+ * <code>*</code>, <code>+</code> and <code>?</code>, grouping with
+ * parentheses, character classes such as <code>[abc]</code> and
+ * <code>[a-d0-9]</code>, and <code>\</code> to escape a metacharacter.
+ * The symbol <code>e</code> stands for the empty string in an NFA, so
+ * it cannot be used as a literal, and a class range may not contain
+ * it either: write <code>[a-df-z]</code> instead of <code>[a-z]</code>.
+ * @author geoffreymeier
+ * @author parkererway
+ *
+ */
+public class Regex {
+	/**
+	 * Characters with a meaning in patterns
+	 */
+	private static final String META = "()|*+?[]\\.";
+
+	/**
+	 * Pattern being parsed and the current position in it
+	 */
+	private String pattern;
+	private int pos;
+
+	/**
+	 * Number of states allocated so far
+	 */
+	private int numStates;
+
+	/**
+	 * Transitions, from[i] --symbol[i]--> to[i]
+	 */
+	private int[] from = new int[16];
+	private char[] symbol = new char[16];
+	private int[] to = new int[16];
+	private int numTransitions;
+
+	private Regex(String pattern) {
+		this.pattern = pattern;
+	}
+
+	/**
+	 * Build an NFA for a regular expression. States are named
+	 * q0, q1, ... in the order they are allocated.
+	 * @param pattern the regular expression
+	 * @return an NFA accepting exactly the language of the pattern
+	 * @throws IllegalArgumentException if the pattern is malformed
+	 */
+	public static NFA compile(String pattern) {
+		Regex r = new Regex(pattern);
+		int[] frag = r.alternation();
+		if (r.pos < pattern.length()) {
+			throw r.error("unexpected '" + pattern.charAt(r.pos) + "'");
+		}
+
+		NFA nfa = new NFA();
+		for (int s = 0; s < r.numStates; s++) {
+			if (s == frag[0]) {
+				nfa.addStartState("q" + s);
+			} else if (s == frag[1]) {
+				nfa.addFinalState("q" + s);
+			} else {
+				nfa.addState("q" + s);
+			}
+		}
+		for (int i = 0; i < r.numTransitions; i++) {
+			nfa.addTransition("q" + r.from[i], r.symbol[i], "q" + r.to[i]);
+		}
+		return nfa;
+	}
+
+	/*
+	 * Each parsing method returns a fragment {start, accept}: the
+	 * accept state has no outgoing transitions yet.
+	 */
+
+	private int[] alternation() {
+		int[] left = concatenation();
+		while (peek() == '|') {
+			pos++;
+			int[] right = concatenation();
+			int s = newState();
+			int f = newState();
+			epsilon(s, left[0]);
+			epsilon(s, right[0]);
+			epsilon(left[1], f);
+			epsilon(right[1], f);
+			left = new int[] { s, f };
+		}
+		return left;
+	}
+
+	private int[] concatenation() {
+		int[] ret = null;
+		while (pos < pattern.length() && peek() != '|' && peek() != ')') {
+			int[] next = repetition();
+			if (ret == null) {
+				ret = next;
+			} else {
+				epsilon(ret[1], next[0]);
+				ret = new int[] { ret[0], next[1] };
+			}
+		}
+		if (ret == null) {
+			// empty pattern or empty branch accepts the empty string
+			int s = newState();
+			int f = newState();
+			epsilon(s, f);
+			ret = new int[] { s, f };
+		}
+		return ret;
+	}
+
+	private int[] repetition() {
+		int[] frag = atom();
+		while (peek() == '*' || peek() == '+' || peek() == '?') {
+			char op = pattern.charAt(pos++);
+			int s = newState();
+			int f = newState();
+			epsilon(s, frag[0]);
+			epsilon(frag[1], f);
+			if (op != '+') {
+				epsilon(s, f);
+			}
+			if (op != '?') {
+				epsilon(frag[1], frag[0]);
+			}
+			frag = new int[] { s, f };
+		}
+		return frag;
+	}
+
+	private int[] atom() {
+		char c = pattern.charAt(pos);
+		if (c == '(') {
+			pos++;
+			int[] frag = alternation();
+			if (peek() != ')') {
+				throw error("missing ')'");
+			}
+			pos++;
+			return frag;
+		}
+		if (c == '[') {
+			pos++;
+			return characterClass();
+		}
+		if (c == '*' || c == '+' || c == '?') {
+			throw error("nothing to repeat");
+		}
+		if (c == '.') {
+			throw error("'.' is not supported");
+		}
+		return symbols(new char[] { literal(false) });
+	}
+
+	private int[] characterClass() {
+		if (peek() == '^') {
+			throw error("negated classes are not supported");
+		}
+		StringBuilder members = new StringBuilder();
+		while (peek() != ']') {
+			if (pos >= pattern.length()) {
+				throw error("missing ']'");
+			}
+			char lo = literal(true);
+			char hi = lo;
+			if (peek() == '-' && pos + 1 < pattern.length() && pattern.charAt(pos + 1) != ']') {
+				pos++;
+				hi = literal(true);
+				if (hi < lo) {
+					throw error("bad range " + lo + "-" + hi);
+				}
+				if (lo < 'e' && 'e' < hi) {
+					String left = lo == 'd' ? "d" : lo + "-d";
+					String right = hi == 'f' ? "f" : "f-" + hi;
+					throw error("range " + lo + "-" + hi + " contains 'e', which is reserved for the empty string;"
+							+ " write " + left + right + " instead");
+				}
+			}
+			for (int m = lo; m <= hi; m++) {
+				if (m == 'e') {
+					throw error("'e' is reserved for the empty string");
+				}
+				if (members.indexOf(String.valueOf((char) m)) < 0) {
+					members.append((char) m);
+				}
+			}
+		}
+		pos++;
+		if (members.length() == 0) {
+			throw error("empty class");
+		}
+		char[] set = members.toString().toCharArray();
+		Arrays.sort(set);
+		return symbols(set);
+	}
+
+	/**
+	 * Read one literal character, handling escapes. Inside a class
+	 * only ']' and '\' need escaping.
+	 */
+	private char literal(boolean inClass) {
+		if (pos >= pattern.length()) {
+			throw error("unexpected end of pattern");
+		}
+		char c = pattern.charAt(pos++);
+		if (c == '\\') {
+			if (pos >= pattern.length()) {
+				throw error("dangling '\\'");
+			}
+			c = pattern.charAt(pos++);
+		} else if (!inClass && META.indexOf(c) >= 0) {
+			throw error("unescaped '" + c + "'");
+		}
+		if (c == 'e') {
+			throw error("'e' is reserved for the empty string");
+		}
+		return c;
+	}
+
+	private int[] symbols(char[] set) {
+		int s = newState();
+		int f = newState();
+		for (char c : set) {
+			transition(s, c, f);
+		}
+		return new int[] { s, f };
+	}
+
+	private char peek() {
+		return pos < pattern.length() ? pattern.charAt(pos) : 0;
+	}
+
+	private int newState() {
+		return numStates++;
+	}
+
+	private void epsilon(int s, int t) {
+		transition(s, 'e', t);
+	}
+
+	private void transition(int s, char c, int t) {
+		if (numTransitions == from.length) {
+			from = Arrays.copyOf(from, numTransitions * 2);
+			symbol = Arrays.copyOf(symbol, numTransitions * 2);
+			to = Arrays.copyOf(to, numTransitions * 2);
+		}
+		from[numTransitions] = s;
+		symbol[numTransitions] = c;
+		to[numTransitions] = t;
+		numTransitions++;
+	}
+
+	private IllegalArgumentException error(String message) {
+		return new IllegalArgumentException(message + " at index " + pos + " in pattern " + pattern);
+	}
+}